@@ -0,0 +1,48 @@
+package tetris;
+
+import java.util.SplittableRandom;
+
+//Подготовка досок для измерений.
+
+final class Boards {
+    private Boards() {
+    }
+
+    //Создает ядро по размеру вида "10x20" (ширина x высота).
+    static BoardEngine create(String size) {
+        int separator = size.indexOf('x');
+        return new BoardEngine(Integer.parseInt(size.substring(0, separator)), Integer.parseInt(size.substring(separator + 1)));
+    }
+
+    /**
+     * Заполняет доску, бросая случайные фигуры в случайные столбцы, пока стопка не достигнет
+     * заданной доли высоты. Заполненные строки удаляются, поэтому в стопке остаются дыры, как в игре.
+     */
+    static void fill(BoardEngine engine, double fraction, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        int target = engine.getHeight() - (int) (engine.getHeight() * fraction);
+        int misses = 0;
+        while (engine.getStackTop() > target && misses < 1000) {
+            TetrominoDefinition piece = TetrominoDefinition.get(random.nextInt(TetrominoDefinition.count()));
+            int rotation = random.nextInt(4);
+            int x = random.nextInt(engine.getWidth() - piece.size() + 1);
+            if (engine.intersects(piece, rotation, x, 0)) {
+                misses++;
+                continue;
+            }
+            int y = engine.landingY(piece, rotation, x, 0);
+            engine.place(piece, rotation, x, y);
+            engine.clearRows(engine.completeRows(y, piece.size()), y);
+        }
+    }
+
+    //Случайные фигуры для измерений, чтобы результат не зависел от одной формы.
+    static TetrominoDefinition[] pieces(int count, long seed) {
+        PieceGenerator generator = new PieceGenerator(PieceGenerator.Mode.BAG, seed);
+        TetrominoDefinition[] pieces = new TetrominoDefinition[count];
+        for (int i = 0; i < count; i++) {
+            pieces[i] = TetrominoDefinition.get(generator.next());
+        }
+        return pieces;
+    }
+}
@@ -0,0 +1,58 @@
+package tetris;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+//Проверка пересечения фигуры с доской (BoardEngine.intersects) в случайных позициях на заполненной наполовину доске.
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CollisionBenchmark {
+    private static final int PROBES = 1024;
+
+    @Param({"10x20", "40x80", "127x254", "500x1000"})
+    public String size;
+
+    private BoardEngine engine;
+    private TetrominoDefinition[] pieces;
+    private int[] rotations, xs, ys;
+    private int next;
+
+    @Setup
+    public void setup() {
+        engine = Boards.create(size);
+        Boards.fill(engine, 0.5, 1);
+        pieces = Boards.pieces(PROBES, 2);
+        rotations = new int[PROBES];
+        xs = new int[PROBES];
+        ys = new int[PROBES];
+        SplittableRandom random = new SplittableRandom(3);
+        for (int i = 0; i < PROBES; i++) {
+            rotations[i] = random.nextInt(4);
+            xs[i] = random.nextInt(engine.getWidth() - pieces[i].size() + 1);
+            ys[i] = random.nextInt(engine.getHeight() - pieces[i].size() + 1);
+        }
+    }
+
+    @Benchmark
+    public boolean intersects() {
+        int i = next++ & (PROBES - 1);
+        return engine.intersects(pieces[i], rotations[i], xs[i], ys[i]);
+    }
+}
@@ -0,0 +1,99 @@
+package tetris;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+//Сброс фигуры: поиск строки приземления (BoardEngine.dropDistance)
+//и полный цикл игры "сброс - фиксация - удаление строк - новая фигура" через Simulation.
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HardDropBenchmark {
+    private static final int PIECES = 1024;
+
+    @Param({"10x20", "40x80", "127x254", "500x1000"})
+    public String size;
+
+    private BoardEngine engine;
+    private TetrominoDefinition[] pieces;
+    //Сдвиг от места появления, в котором фигура помещается в верхней строке.
+    private int[] shifts;
+    private int next;
+
+    private Simulation simulation;
+    private long seed;
+
+    @Setup
+    public void setup() {
+        engine = Boards.create(size);
+        Boards.fill(engine, 0.5, 1);
+        pieces = Boards.pieces(PIECES, 2);
+        shifts = new int[PIECES];
+        SplittableRandom random = new SplittableRandom(3);
+        for (int i = 0; i < PIECES; i++) {
+            engine.spawn(pieces[i]);
+            int shift = random.nextInt(engine.getWidth() - pieces[i].size() + 1) - engine.getX();
+            shifts[i] = engine.fits(shift, 0) ? shift : 0;
+        }
+
+        simulation = new Simulation(Boards.create(size));
+        simulation.setListener(new Simulation.Listener() {
+            @Override
+            public void onSpawn(TetrominoDefinition piece) {
+            }
+
+            @Override
+            public void onStep(boolean softDrop) {
+            }
+
+            @Override
+            public void onLock(int completeRows) {
+            }
+
+            @Override
+            public void onGameOver() {
+            }
+        });
+        simulation.start(new PieceQueue(new PieceGenerator(PieceGenerator.Mode.BAG, seed++), 1));
+    }
+
+    @Benchmark
+    public int dropDistance() {
+        int i = next++ & (PIECES - 1);
+        engine.spawn(pieces[i]);
+        engine.tryMove(shifts[i], 0);
+        return engine.dropDistance();
+    }
+
+    //Одна фигура: сброс и такты до появления следующей. После конца игры начинается новая.
+    @Benchmark
+    public long hardDropAndLock() {
+        if (simulation.isGameOver()) {
+            simulation.start(new PieceQueue(new PieceGenerator(PieceGenerator.Mode.BAG, seed++), 1));
+        }
+        simulation.hardDrop();
+        while (simulation.isDropping()) {
+            simulation.tick();
+        }
+        while (!simulation.isGameOver() && !simulation.getEngine().hasPiece()) {
+            simulation.tick();
+        }
+        return simulation.getTick();
+    }
+}
@@ -0,0 +1,51 @@
+package tetris;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+//Фиксация фигур и удаление строк (BoardEngine.place, completeRows, clearRows).
+//Одна операция кладет ряд квадратов O на дно пустой доски и удаляет две заполненные строки,
+//после чего доска снова пуста.
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LineClearBenchmark {
+    @Param({"10x20", "40x80", "128x256", "500x1000"})
+    public String size;
+
+    private BoardEngine engine;
+    //Смещение фигуры O, при котором её левый столбец совпадает с x.
+    private int offset;
+
+    @Setup
+    public void setup() {
+        engine = Boards.create(size);
+        offset = Integer.numberOfTrailingZeros(TetrominoDefinition.O.getRowMasks(0)[1]);
+    }
+
+    @Benchmark
+    public int placeAndClear() {
+        TetrominoDefinition o = TetrominoDefinition.O;
+        int y = 0;
+        for (int x = 0; x + 2 <= engine.getWidth(); x += 2) {
+            y = engine.landingY(o, 0, x - offset, 0);
+            engine.place(o, 0, x - offset, y);
+        }
+        return engine.clearRows(engine.completeRows(y, o.size()), y);
+    }
+}
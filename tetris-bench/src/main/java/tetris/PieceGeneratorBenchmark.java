@@ -0,0 +1,50 @@
+package tetris;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+//Выбор следующей фигуры (PieceGenerator.next) и очередь просмотра (PieceQueue.take) в каждом режиме.
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PieceGeneratorBenchmark {
+    @Param({"RANDOM", "BAG", "HISTORY"})
+    public String mode;
+
+    @Param({"1", "6"})
+    public int previews;
+
+    private PieceGenerator generator;
+    private PieceQueue queue;
+
+    @Setup
+    public void setup() {
+        generator = new PieceGenerator(PieceGenerator.Mode.valueOf(mode), 1);
+        queue = new PieceQueue(new PieceGenerator(PieceGenerator.Mode.valueOf(mode), 1), previews);
+    }
+
+    @Benchmark
+    public int next() {
+        return generator.next();
+    }
+
+    @Benchmark
+    public TetrominoDefinition take() {
+        return queue.take();
+    }
+}
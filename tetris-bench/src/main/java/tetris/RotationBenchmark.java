@@ -0,0 +1,55 @@
+package tetris;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+//Поворот фигуры с перебором смещений (BoardEngine.tryRotate) на свободном месте и прижатой к стопке.
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RotationBenchmark {
+    private static final int PIECES = 1024;
+
+    @Param({"10x20", "40x80", "127x254", "500x1000"})
+    public String size;
+
+    private BoardEngine engine;
+    private TetrominoDefinition[] pieces;
+    private int next;
+
+    @Setup
+    public void setup() {
+        engine = Boards.create(size);
+        Boards.fill(engine, 0.5, 1);
+        pieces = Boards.pieces(PIECES, 2);
+    }
+
+    @Benchmark
+    public boolean rotateInOpenSpace() {
+        engine.spawn(pieces[next++ & (PIECES - 1)]);
+        return engine.tryRotate(true);
+    }
+
+    //Фигура опускается на стопку, и поворот чаще требует смещений.
+    @Benchmark
+    public boolean rotateOnStack() {
+        engine.spawn(pieces[next++ & (PIECES - 1)]);
+        engine.tryMove(0, engine.dropDistance());
+        return engine.tryRotate(true);
+    }
+}
@@ -0,0 +1,238 @@
+package tetris;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//Пакетный прогон игр без JavaFX: проверка изменений правил и измерение скорости ядра.
+//Каждая игра идет на своих BoardEngine и Simulation с seed = --seed + номер игры,
+//фигурами управляет стратегия InputPolicy. Игры разбирают по одной --threads рабочих потоков
+//(обычных или, начиная с Java 21, виртуальных). Каждый поток считает свои итоги и время фигур,
+//и они складываются после прогона, поэтому потоки не делят счетчики во время замера.
+//Пример: java -cp tetris.jar tetris.BatchRunner --games=1000 --threads=8 --policy=lowest
+
+final class BatchRunner {
+    //Параметры прогона.
+    private final int games;
+    private final int threads;
+    //Виртуальные потоки. Сбрасывается, если их нет в этой версии Java.
+    private boolean virtual;
+    private final long seed;
+    private final int width, height, previews;
+    private final PieceGenerator.Mode mode;
+    private final String policy;
+    //Игра прекращается после этого количества фигур, даже если она не окончена.
+    private final int maxPieces;
+    //Параметры бота (policy=bot): сколько следующих фигур учитывать, время на фигуру (0 - без ограничения) и веса.
+    private final int lookahead;
+    private final long budgetNanos;
+    private final double[] weights;
+
+    //Также используется рабочими процессами ShardWorker, которые получают те же параметры игр.
+    BatchRunner(Map<String, String> options) {
+        games = Integer.parseInt(option(options, "games", "100"));
+        threads = Integer.parseInt(option(options, "threads", String.valueOf(Runtime.getRuntime().availableProcessors())));
+        virtual = Boolean.parseBoolean(option(options, "virtual", "false"));
+        seed = Long.parseLong(option(options, "seed", "1"));
+        width = Integer.parseInt(option(options, "width", "10"));
+        height = Integer.parseInt(option(options, "height", "20")) + Board.HIDDEN_ROWS;
+        previews = Integer.parseInt(option(options, "previews", "1"));
+        mode = PieceGenerator.Mode.valueOf(option(options, "mode", "BAG").toUpperCase());
+        policy = option(options, "policy", "random");
+        maxPieces = Integer.parseInt(option(options, "max-pieces", "10000"));
+        lookahead = Integer.parseInt(option(options, "lookahead", "1"));
+        String weightsOption = options.get("weights");
+        weights = weightsOption != null ? PlacementBot.parseWeights(weightsOption) : PlacementBot.DEFAULT_WEIGHTS;
+        budgetNanos = TimeUnit.MILLISECONDS.toNanos(Long.parseLong(option(options, "budget-ms", "0")));
+    }
+
+    //Значение параметра name или defaultValue, если параметр не задан.
+    static String option(Map<String, String> options, String name, String defaultValue) {
+        String value = options.get(name);
+        return value != null ? value : defaultValue;
+    }
+
+    //Итог одной игры.
+    static final class Result {
+        long pieces;
+        long lines;
+        //Очки, как в ScoreManager.
+        long score;
+        long ticks;
+        boolean gameOver;
+        //Номер игры в участке ShardWorker.
+        int index;
+    }
+
+    //Итоги игр одного рабочего потока.
+    private static final class Totals {
+        long games, pieces, lines, ticks, gameOvers;
+        //Время одной фигуры: ход стратегии и такты до появления следующей фигуры.
+        final LatencyHistogram placements = new LatencyHistogram();
+    }
+
+    //Стратегия для игры с начальным значением gameSeed.
+    private InputPolicy createPolicy(long gameSeed) {
+        switch (policy) {
+            case "lowest":
+                return InputPolicy.lowest();
+            case "random":
+                return InputPolicy.random(gameSeed);
+            case "bot":
+                return new PlacementBot(weights, lookahead, budgetNanos, ForkJoinPool.commonPool());
+            default:
+                throw new IllegalArgumentException("Unknown policy: " + policy);
+        }
+    }
+
+    //Играет одну игру с начальным значением gameSeed до конца или до maxPieces фигур. Время фигур не измеряется.
+    Result play(long gameSeed) {
+        return play(gameSeed, null);
+    }
+
+    private Result play(long gameSeed, LatencyHistogram placements) {
+        return play(width, height, new PieceQueue(new PieceGenerator(mode, gameSeed), previews), createPolicy(gameSeed),
+                maxPieces, placements);
+    }
+
+    /**
+     * Играет одну игру на доске width x height до конца или до maxPieces фигур.
+     *
+     * @param policy     стратегия, которая управляет каждой появившейся фигурой.
+     * @param placements время каждой фигуры: ход стратегии и такты до появления следующей. null - не измеряется.
+     */
+    static Result play(int width, int height, PieceQueue pieceQueue, InputPolicy policy, int maxPieces,
+                       LatencyHistogram placements) {
+        final Result result = new Result();
+        Simulation simulation = new Simulation(new BoardEngine(width, height));
+        simulation.setListener(new Simulation.Listener() {
+            @Override
+            public void onSpawn(TetrominoDefinition piece) {
+                result.pieces++;
+            }
+
+            @Override
+            public void onStep(boolean softDrop) {
+            }
+
+            @Override
+            public void onLock(int completeRows) {
+                int rows = Integer.bitCount(completeRows);
+                result.lines += rows;
+                result.score += ScoreManager.points(rows);
+            }
+
+            @Override
+            public void onGameOver() {
+            }
+        });
+        simulation.start(pieceQueue);
+        while (simulation.isRunning() && result.pieces < maxPieces) {
+            long start = System.nanoTime();
+            long pieces = result.pieces;
+            policy.place(simulation);
+            while (simulation.isRunning() && result.pieces == pieces) {
+                simulation.tick();
+            }
+            if (placements != null) {
+                placements.record(System.nanoTime() - start);
+            }
+        }
+        result.ticks = simulation.getTick();
+        result.gameOver = simulation.isGameOver();
+        return result;
+    }
+
+    //Пул потоков: виртуальные потоки создаются через отражение, так как сборка нацелена на Java 11.
+    private ExecutorService createExecutor() {
+        if (virtual) {
+            try {
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                System.err.println("Virtual threads are not available in Java " + Runtime.version().feature()
+                        + ", using platform threads");
+                virtual = false;
+            }
+        }
+        return Executors.newFixedThreadPool(threads);
+    }
+
+    private void run() throws InterruptedException, ExecutionException {
+        ExecutorService executor = createExecutor();
+        final AtomicInteger nextGame = new AtomicInteger();
+        List<Future<Totals>> futures = new ArrayList<>(threads);
+        long start = System.nanoTime();
+        // Виртуальных потоков создается столько же, сколько обычных: --threads задает число игр, идущих одновременно.
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(new Callable<Totals>() {
+                @Override
+                public Totals call() {
+                    Totals totals = new Totals();
+                    for (int i = nextGame.getAndIncrement(); i < games; i = nextGame.getAndIncrement()) {
+                        Result result = play(seed + i, totals.placements);
+                        totals.games++;
+                        totals.pieces += result.pieces;
+                        totals.lines += result.lines;
+                        totals.ticks += result.ticks;
+                        totals.gameOvers += result.gameOver ? 1 : 0;
+                    }
+                    return totals;
+                }
+            }));
+        }
+        long pieces = 0, lines = 0, ticks = 0, gameOvers = 0;
+        LatencyHistogram placements = new LatencyHistogram();
+        for (Future<Totals> future : futures) {
+            Totals totals = future.get();
+            pieces += totals.pieces;
+            lines += totals.lines;
+            ticks += totals.ticks;
+            gameOvers += totals.gameOvers;
+            placements.add(totals.placements);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        executor.shutdown();
+
+        System.out.printf("%d games (%d over, %d stopped at %d pieces), %d %sthreads, policy %s, mode %s, board %dx%d%n",
+                games, gameOvers, games - gameOvers, maxPieces, threads, virtual ? "virtual " : "",
+                policy, mode, width, height - Board.HIDDEN_ROWS);
+        System.out.printf("%.3f s: %.1f games/s, %.0f pieces/s, %.0f lines/s, %.0f ticks/s%n",
+                seconds, games / seconds, pieces / seconds, lines / seconds, ticks / seconds);
+        System.out.printf("per game: %.1f pieces, %.1f lines%n", (double) pieces / games, (double) lines / games);
+        System.out.printf("placement: p50 %.2f us, p99 %.2f us, max %.2f us%n", placements.getPercentile(0.5) / 1e3,
+                placements.getPercentile(0.99) / 1e3, placements.getMax() / 1e3);
+    }
+
+    /**
+     * Аргументы в виде --имя=значение: games, threads (сколько игр идет одновременно),
+     * virtual (true/false: рабочие потоки виртуальные), seed, width, height,
+     * previews, mode (RANDOM, BAG, HISTORY), policy (random, lowest, bot), max-pieces,
+     * lookahead, budget-ms и weights (для policy=bot, веса через запятую, как их пишет WeightTuner).
+     */
+    public static void main(String[] args) throws InterruptedException, ExecutionException {
+        new BatchRunner(parseOptions("BatchRunner", args)).run();
+    }
+
+    //Разбирает аргументы вида --имя=значение. При другом аргументе печатает подсказку и завершает процесс.
+    static Map<String, String> parseOptions(String program, String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (!arg.startsWith("--") || equals < 0) {
+                System.err.println("Usage: " + program + " [--name=value]...");
+                System.exit(2);
+            }
+            options.put(arg.substring(2, equals), arg.substring(equals + 1));
+        }
+        return options;
+    }
+}
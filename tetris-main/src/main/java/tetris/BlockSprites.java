@@ -0,0 +1,81 @@
+package tetris;
+import javafx.geometry.Rectangle2D;
+import javafx.scene.SnapshotParameters;
+import javafx.scene.effect.Light;
+import javafx.scene.effect.Lighting;
+import javafx.scene.image.Image;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.ImagePattern;
+import javafx.scene.shape.Rectangle;
+
+import java.util.Arrays;
+
+//Заранее отрисованные изображения клеток для каждого цвета фигуры и каждого угла освещения.
+//Освещение вычисляется один раз при создании изображения, поэтому клетки на доске не несут эффектов,
+//которые пересчитываются на каждом кадре. При изменении размера клетки изображения создаются заново по мере надобности.
+
+final class BlockSprites {
+    //Общий набор изображений доски: стопки, фигур и холста. У предварительного просмотра свой набор,
+    //чтобы изображения одного размера не вытесняли изображения другого.
+    private static final BlockSprites SHARED = new BlockSprites();
+    //Количество углов освещения: по одному на каждое состояние поворота фигуры.
+    private static final int LIGHT_ANGLES = 4;
+    //Изображения по индексу type * LIGHT_ANGLES + rotation, null - еще не создано.
+    private final Image[] images = new Image[TetrominoDefinition.count() * LIGHT_ANGLES];
+    //Заливки прямоугольников из этих изображений.
+    private final ImagePattern[] patterns = new ImagePattern[images.length];
+    //Размер клетки, для которого созданы изображения.
+    private double size;
+
+    static BlockSprites shared() {
+        return SHARED;
+    }
+
+    /**
+     * Возвращает изображение клетки размером size x size.
+     *
+     * @param type     номер фигуры.
+     * @param rotation состояние поворота узла фигуры. Свет повернут навстречу,
+     *                 поэтому на экране он всегда падает с одной стороны.
+     */
+    public Image get(int type, int rotation, double size) {
+        if (size != this.size) {
+            Arrays.fill(images, null);
+            Arrays.fill(patterns, null);
+            this.size = size;
+        }
+        int index = type * LIGHT_ANGLES + rotation;
+        Image image = images[index];
+        if (image == null) {
+            image = render(type, rotation, size);
+            images[index] = image;
+        }
+        return image;
+    }
+
+    //Возвращает заливку прямоугольника клетки, растянутую на весь прямоугольник.
+    public ImagePattern getPattern(int type, int rotation, double size) {
+        Image image = get(type, rotation, size);
+        int index = type * LIGHT_ANGLES + rotation;
+        ImagePattern pattern = patterns[index];
+        if (pattern == null) {
+            pattern = new ImagePattern(image);
+            patterns[index] = pattern;
+        }
+        return pattern;
+    }
+
+    //Рисует клетку с закругленными углами и освещением.
+    private static Image render(int type, int rotation, double size) {
+        Rectangle rectangle = new Rectangle(size, size, Tetromino.getColor(type));
+        rectangle.setArcHeight(7);
+        rectangle.setArcWidth(7);
+        Lighting lighting = new Lighting(new Light.Distant(225 - 90 * rotation + 360, 55, Color.WHITE));
+        lighting.setSurfaceScale(0.8);
+        rectangle.setEffect(lighting);
+        SnapshotParameters parameters = new SnapshotParameters();
+        parameters.setFill(Color.TRANSPARENT);
+        parameters.setViewport(new Rectangle2D(0, 0, size, size));
+        return rectangle.snapshot(parameters, null);
+    }
+}
@@ -4,70 +4,111 @@ import javafx.application.Platform;
 import javafx.beans.binding.DoubleBinding;
 import javafx.beans.binding.ObjectBinding;
 import javafx.beans.property.DoubleProperty;
-import javafx.beans.property.SimpleDoubleProperty;
 import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableIntegerValue;
 import javafx.beans.value.ObservableValue;
-import javafx.beans.value.WeakChangeListener;
-import javafx.collections.FXCollections;
-import javafx.collections.ObservableList;
-import javafx.event.ActionEvent;
-import javafx.event.EventHandler;
+import javafx.beans.property.ReadOnlyDoubleProperty;
+import javafx.beans.property.ReadOnlyIntegerProperty;
+import javafx.beans.property.ReadOnlyIntegerWrapper;
+import javafx.beans.property.SimpleDoubleProperty;
 import javafx.geometry.HorizontalDirection;
 import javafx.geometry.Pos;
+import javafx.scene.Group;
 import javafx.scene.Node;
-import javafx.scene.effect.Light;
 import javafx.scene.layout.StackPane;
 import javafx.scene.shape.Line;
 import javafx.scene.shape.Rectangle;
-import javafx.util.Duration;
+import javafx.scene.transform.Scale;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
 import java.util.EventListener;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 //Данный класс представляет доску, на которой размещен игровой процесс
 
 final class Board extends StackPane {
     //Количество скрытых рядов, которые расположены невидимо над доской.
-    private static final byte HIDDEN_ROWS = 2;
+    static final byte HIDDEN_ROWS = 2;
     //Количество блоков в строке. По умолчанию это значение равно 10.
     protected static  byte BLOCKS_PER_ROW;
     //Количество блоков в столбце. По умолчанию это значение равно 20.
     protected static  byte  BLOCKS_PER_COLUMN;
-    //Максимальное количество предварительных просмотров.
-    private static final byte MAX_PREVIEWS = 1;
-    //Переход "Двигаться вниз".
-    private final TranslateTransition moveDownTransition;
-    //Переход "Повернуть".
-    private final RotateTransition rotateTransition;
-    private final SequentialTransition moveTransition;
-    //Переход, который позволяет фрагменту быстро перемещаться вниз.
-    private final TranslateTransition moveDownFastTransition;
-     //Переход для перемещения влево/вправо.
-    private final TranslateTransition translateTransition;
-    //Набор выполняющихся переходов.
-    //Все запущенные переходы приостанавливаются, когда игра приостанавливается
-    private final Set<Animation> runningAnimations = new HashSet<>();
-    //Двумерный массив, который определяет доску.
-    //Если элемент в матрице равен null, то он пуст, в противном случае он занят.
-    private final Rectangle[][] matrix = new Rectangle[BLOCKS_PER_COLUMN + HIDDEN_ROWS][BLOCKS_PER_ROW];
-    //список фигур(тетромино), которые будут следущими
-    private final ObservableList<Tetromino> waitingTetrominos = FXCollections.observableArrayList();
-    //Очень быстрый переход по выпадающему списку.
-    private final TranslateTransition dropDownTransition;
-     //Сохраняет, если нажата клавиша "Вниз".
-     //Пока это так, воспроизводится moveDownFastTransition
-    private boolean moving = false;
-    //Текущее положение x и y с матрицей текущего тетромино.
-    private int x = 0, y = 0;
-    //Верно, в то время как тетромино отбрасывается (с помощью клавиши пробела).
-    private boolean isDropping = false;
+    //Количество фигур, которые видны заранее. По умолчанию это значение равно 1.
+    protected static byte PREVIEWS = 1;
+    //Способ выбора следующей фигуры.
+    protected static PieceGenerator.Mode GENERATOR_MODE = PieceGenerator.Mode.RANDOM;
+    //Рисовать доску на одном холсте (-Dtetris.renderer=canvas или --renderer=canvas) вместо отдельных узлов.
+    protected static boolean CANVAS_RENDERER = "canvas".equalsIgnoreCase(System.getProperty("tetris.renderer"));
+    //Каталог, в который записывается каждая игра (-Dtetris.record=<каталог> или --record=<каталог>), null - не записывать.
+    protected static Path RECORD_DIRECTORY = System.getProperty("tetris.record") == null ? null
+            : Paths.get(System.getProperty("tetris.record"));
+    //Длительность мигания удаляемой строки и падения строк над ней в секундах.
+    private static final double DELETE_SECONDS = 0.81;
+    private static final double FALL_SECONDS = 0.1;
+    //Часы, которые выполняют все анимации доски.
+    //Пауза останавливает их время, а завершенные анимации используются снова.
+    private final GameClock clock = new GameClock();
+    //Угол, к которому поворачивается узел текущей фигуры.
+    private double rotateAngle;
+    //Игровое ядро, в котором хранится состояние доски и текущей фигуры.
+    //Доска только отображает его состояние.
+    private final BoardEngine engine = new BoardEngine(BLOCKS_PER_ROW, BLOCKS_PER_COLUMN + HIDDEN_ROWS);
+    //Правила игры, которые выполняются по тактам.
+    private final Simulation simulation = new Simulation(engine);
+    //Игровой цикл, который продвигает simulation с фиксированным шагом.
+    //Переходы только анимируют фигуру между тактами.
+    private final GameLoop gameLoop;
+    //Отрисовка на холсте, null - доска состоит из отдельных узлов.
+    private final CanvasRenderer canvasRenderer;
+    //Показатели работы, которые видны через JMX.
+    private final GameMetrics metrics = GameMetrics.get();
+    //Кадров до следующего подсчета узлов доски.
+    private int sampleCountdown;
+    //Запись текущей игры, null - игра не записывается.
+    private ReplayRecorder recorder;
+    //Воспроизводимая запись, null - игрой управляет игрок.
+    private ReplayPlayer replayPlayer;
+    //Файл снимка игры и счет, который в него пишется. null - снимки не пишутся.
+    private GameSnapshot snapshot;
+    private ObservableIntegerValue score;
+    //Такт, после которого снимок пишется снова.
+    private long nextSnapshotTick;
+    //Состояния игры при появлении каждой фигуры, к которым можно вернуться.
+    private final BoardHistory history = new BoardHistory(BLOCKS_PER_ROW, BLOCKS_PER_COLUMN + HIDDEN_ROWS);
+    //Группы строк стопки по номеру строки ядра. Прямоугольники занятых клеток лежат в группе своей строки,
+    //поэтому удаляемая строка гаснет, а строки над ней падают одной анимацией на строку.
+    private final Group[] rows = new Group[BLOCKS_PER_COLUMN + HIDDEN_ROWS];
+    //Слой, в котором лежат группы строк.
+    private final Group stack = new Group();
+    //Погасшие группы строк и прямоугольники их клеток, которые используются снова.
+    private final ArrayDeque<Group> rowPool = new ArrayDeque<>();
+    private final ArrayDeque<Rectangle> cellPool = new ArrayDeque<>();
+    //Очередь фигур (тетромино), которые будут следущими. null, если игра не идет.
+    private PieceQueue pieceQueue;
+    //Количество фигур, появившихся в текущей игре. Меняется при каждом появлении фигуры.
+    private final ReadOnlyIntegerWrapper spawned = new ReadOnlyIntegerWrapper();
     //Текущий тетромино, который падает.
     private Tetromino currentTetromino;
+    //Определение текущей фигуры. Хранится и при отрисовке холстом, когда узла фигуры нет.
+    private TetrominoDefinition currentPiece;
+    //Тень текущего тетромино в месте его приземления.
+    private Tetromino ghostTetromino;
+    //Положение x, поворот и версия стопки, для которых вычислена тень.
+    //Тень пересчитывается только при изменении одного из них.
+    private int ghostX, ghostRotation, ghostStackVersion;
+    private int ghostY;
     private List<BoardListener> boardListeners = new CopyOnWriteArrayList<>();
+    //Асинхронная доставка событий, создается при первом обращении.
+    private BoardEventPipeline eventPipeline;
     private DoubleProperty squareSize = new SimpleDoubleProperty();
+    //Слой с клетками и фигурами. Узлы в нем расположены в клетках доски (единица - одна клетка),
+    //и весь слой масштабируется одним преобразованием до размера клетки в пикселях.
+    //Поэтому изменение размера доски не затрагивает отдельные клетки.
+    private final Group layer = new Group();
     //Создание доски
     public Board() {
         setFocusTraversable(true);
@@ -87,52 +128,82 @@ final class Board extends StackPane {
         });
         setAlignment(Pos.TOP_LEFT);
 
-        // Инициализировать переход перемещения вниз
-        moveDownTransition = new TranslateTransition(Duration.seconds(0.3));
-        moveDownTransition.setOnFinished(new EventHandler<ActionEvent>() {
+        if (CANVAS_RENDERER) {
+            // Стопка, фигура и тень рисуются на холсте после тактов каждого кадра.
+            canvasRenderer = new CanvasRenderer(engine, HIDDEN_ROWS, squareSize);
+            getChildren().add(canvasRenderer.getCanvas());
+        } else {
+            canvasRenderer = null;
+            Scale scale = new Scale();
+            scale.xProperty().bind(squareSize);
+            scale.yProperty().bind(squareSize);
+            layer.getTransforms().add(scale);
+            // Слой не выравнивается StackPane: положение узлов задается только их смещением.
+            layer.setManaged(false);
+            getChildren().add(layer);
+            layer.getChildren().add(stack);
+            resetRows();
+            squareSize.addListener(new ChangeListener<Number>() {
+                @Override
+                public void changed(ObservableValue<? extends Number> observable, Number oldValue, Number newValue) {
+                    refreshSprites();
+                }
+            });
+        }
+        gameLoop = new GameLoop(simulation, new Runnable() {
             @Override
-            public void handle(ActionEvent actionEvent) {
-                moving = false;
-                y++;
+            public void run() {
+                if (canvasRenderer != null) {
+                    canvasRenderer.render();
+                }
+                if (recorder != null) {
+                    recorder.frame();
+                }
+                if (snapshot != null && simulation.getTick() >= nextSnapshotTick) {
+                    saveSnapshot();
+                }
+                // Запись кончилась до конца игры (игрок остановил её): фигура больше не падает.
+                if (replayPlayer != null && replayPlayer.isFinished() && simulation.isRunning()) {
+                    gameLoop.stop();
+                }
+                // Узлы считаются раз в секунду, чтобы обход сцены не стоил заметного времени.
+                if (--sampleCountdown <= 0) {
+                    sampleCountdown = Simulation.TICKS_PER_SECOND;
+                    metrics.sample(Board.this, clock.getAnimationCount());
+                }
             }
         });
-        // После того как фигура переместится вниз,
-        //ожидать некоторое время, пока она не переместится снова.
-        PauseTransition pauseTransition = new PauseTransition();
-        pauseTransition.durationProperty().bind(moveDownTransition.durationProperty());
-
-        moveTransition = new SequentialTransition();
-        moveTransition.getChildren().addAll(moveDownTransition, pauseTransition);
-        moveTransition.setOnFinished(new EventHandler<ActionEvent>() {
+
+        gameLoop.setBeforeTick(new Runnable() {
             @Override
-            public void handle(ActionEvent actionEvent) {
-                moveDown();
+            public void run() {
+                if (replayPlayer != null) {
+                    replayPlayer.beforeTick();
+                }
             }
         });
 
-        // Движение должно быть приостановлено.
-        registerPausableAnimation(moveTransition);
-
-        // Быстрое перемещение фигуры
-        moveDownFastTransition = new TranslateTransition(Duration.seconds(0.08));
-        // Линейный интерполятор для плавного движения фигур
-        moveDownFastTransition.setInterpolator(Interpolator.LINEAR);
-        moveDownFastTransition.setOnFinished(new EventHandler<ActionEvent>() {
-            public void handle(ActionEvent actionEvent) {
-                y++;
-                moveDownFast();
+        simulation.setListener(new Simulation.Listener() {
+            @Override
+            public void onSpawn(TetrominoDefinition piece) {
+                spawnTetromino(piece);
             }
-        });
-        registerPausableAnimation(moveDownFastTransition);
 
-        // Перемещает фигуру влево и вправо.
-        translateTransition = new TranslateTransition(Duration.seconds(0.1));
-        registerPausableAnimation(translateTransition);
+            @Override
+            public void onStep(boolean softDrop) {
+                stepDown(softDrop);
+            }
 
-        // Поворачивает
-        rotateTransition = new RotateTransition(Duration.seconds(0.1));
-        dropDownTransition = new TranslateTransition(Duration.seconds(0.1));
-        dropDownTransition.setInterpolator(Interpolator.EASE_IN);
+            @Override
+            public void onLock(int completeRows) {
+                mergeTetrominoWithBoard(completeRows);
+            }
+
+            @Override
+            public void onGameOver() {
+                gameOver();
+            }
+        });
 
         squareSize.bind(new DoubleBinding() {
             {
@@ -145,67 +216,89 @@ final class Board extends StackPane {
             }
         });
     }
-    //Регистрирует анимацию, которая добавляется в список запущенных анимаций
-    //Когда игра приостанавливается, все запущенные анимации приостанавливаются.
-    private void registerPausableAnimation(final Animation animation) {
-        animation.statusProperty().addListener(new ChangeListener<Animation.Status>() {
-            @Override
-            public void changed(ObservableValue<? extends Animation.Status> observableValue, Animation.Status status, Animation.Status status2) {
-                if (status2 == Animation.Status.STOPPED) {
-                    runningAnimations.remove(animation);
-                } else {
-                    runningAnimations.add(animation);
-                }
-            }
-        });
-    }
-
-  //Порождение новой фигуры (тетромино)
-    private void spawnTetromino() {
-
-        // Заполните очередь ожидающих тетромино, если она пуста.
-        while (waitingTetrominos.size() <= MAX_PREVIEWS) {
-            waitingTetrominos.add(Tetromino.random(squareSize));
+  //Порождение новой фигуры (тетромино), которая уже появилась в ядре.
+    private void spawnTetromino(TetrominoDefinition piece) {
+
+        spawned.set(spawned.get() + 1);
+        metrics.spawned(System.nanoTime());
+        currentPiece = piece;
+        GameEvents.spawn(piece, engine.getX(), engine.getY(), spawned.get());
+        history.push(simulation.getPieceQueue(), piece, simulation.getTick(), score == null ? 0 : score.get(), spawned.get());
+        if (canvasRenderer != null) {
+            return;
         }
+        showPiece(piece);
+    }
 
-        // Удаляется первый из очереди и создается заново.
-        currentTetromino = waitingTetrominos.remove(0);
-
-        // Сбрасывание всех переходов
-        rotateTransition.setNode(currentTetromino);
-        rotateTransition.setToAngle(0);
+    //Создает узлы текущей фигуры и её тени в положении и состоянии поворота фигуры в ядре.
+    private void showPiece(TetrominoDefinition piece) {
+        currentTetromino = Tetromino.create(piece, squareSize);
 
-        translateTransition.setNode(currentTetromino);
-        moveDownTransition.setNode(currentTetromino);
-        moveDownFastTransition.setNode(currentTetromino);
+        rotateAngle = engine.getRotation() * 90;
+        currentTetromino.setRotate(rotateAngle);
+        currentTetromino.setLightRotation(engine.getRotation());
 
-        // Добавление текущей фигуры на доску
-        getChildren().add(currentTetromino);
+        // Добавление тени и текущей фигуры на доску
+        ghostTetromino = currentTetromino.clone();
+        ghostTetromino.setOpacity(0.25);
+        layer.getChildren().add(ghostTetromino);
+        layer.getChildren().add(currentTetromino);
 
-        // Перемещение фигуы в привильное положение
-        // Запуск тетромино посередине (I, O) или слева посередине (J, L, S, T, Z).
-        x = (matrix[0].length - currentTetromino.getMatrix().length) / 2;
-        y = 0;
         // Перевод тетромино в исходное положение
-        currentTetromino.setTranslateY((y - Board.HIDDEN_ROWS) * getSquareSize());
-        currentTetromino.setTranslateX(x * getSquareSize());
+        currentTetromino.setTranslateY(engine.getY() - Board.HIDDEN_ROWS);
+        currentTetromino.setTranslateX(engine.getX());
         //translateTransition.setToX(currentTetromino.getTranslateX());
-
-        // Начало движения фигур
-        moveDown();
+        ghostStackVersion = engine.getStackVersion() - 1;
+        updateGhost();
     }
-//Уведомление тетромино о том, что он не может двигаться дальше вниз.
-
-    private void tetrominoDropped() {
-        if (y == 0) {
-            //Если фигура не смогла сдвинуться с места и мы все еще находимся в исходной позиции y, то игра окончена.
-            currentTetromino = null;
-            waitingTetrominos.clear();
-            notifyGameOver();
-        } else {
-            mergeTetrominoWithBoard();
+    //Плавно показывает шаг фигуры вниз, который уже выполнен в ядре.
+    private void stepDown(boolean softDrop) {
+        if (currentTetromino == null) {
+            return;
         }
+        // Быстрое падение - линейно, чтобы шаги сливались в плавное движение.
+        clock.animate(currentTetromino, GameClock.Property.TRANSLATE_Y, engine.getY() - Board.HIDDEN_ROWS,
+                softDrop ? 0.08 : 0.3, softDrop ? Interpolator.LINEAR : Interpolator.EASE_BOTH);
     }
+    //Фигура не смогла сдвинуться с исходной позиции: игра окончена.
+    private void gameOver() {
+        gameLoop.stop();
+        removeGhost();
+        GameEvents.gameOver(spawned.get(), engine.getStackTop());
+        stopRecording();
+        if (snapshot != null) {
+            snapshot.discard();
+        }
+        currentTetromino = null;
+        pieceQueue = null;
+        spawned.set(0);
+        notifyGameOver();
+    }
+    //Перемещает тень в строку приземления текущей фигуры.
+    //Строка берется из поверхности стопки ядра и пересчитывается только при изменении x, поворота или стопки.
+    private void updateGhost() {
+        if (ghostTetromino == null || !engine.hasPiece()) {
+            return;
+        }
+        if (ghostX == engine.getX() && ghostRotation == engine.getRotation() && ghostStackVersion == engine.getStackVersion()) {
+            return;
+        }
+        ghostX = engine.getX();
+        ghostRotation = engine.getRotation();
+        ghostStackVersion = engine.getStackVersion();
+        ghostY = engine.landingY(engine.getPiece(), ghostRotation, ghostX, engine.getY());
+        ghostTetromino.setRotate(ghostRotation * 90);
+        ghostTetromino.setLightRotation(ghostRotation);
+        ghostTetromino.setTranslateX(ghostX);
+        ghostTetromino.setTranslateY(ghostY - HIDDEN_ROWS);
+    }
+
+    //Убирает тень с доски.
+    private void removeGhost() {
+        layer.getChildren().remove(ghostTetromino);
+        ghostTetromino = null;
+    }
+
     //Уведомляет слушателя о том, что фрагмент выпал.
     private void notifyOnDropped() {
         for (BoardListener boardListener : boardListeners) {
@@ -246,245 +339,428 @@ final class Board extends StackPane {
     }
     //Объединяет тетромино с доской.
     //Для каждой плитки создан прямоугольник на доске.
-    //В конце концов тетромино убирается с доски и появляется новый.
-    private void mergeTetrominoWithBoard() {
-        int[][] tetrominoMatrix = currentTetromino.getMatrix();
+    //В конце концов тетромино убирается с доски, новый появится по такту игры.
+    private void mergeTetrominoWithBoard(final int completeRows) {
+        final long lockTime = System.nanoTime();
+        metrics.locked(lockTime);
+        GameEvents.lock(currentPiece, engine.getRotation(), engine.getX(), engine.getY(), completeRows);
+        history.lock(engine, engine.getY(), currentPiece.size(), completeRows);
+        if (canvasRenderer != null) {
+            // Холст рисует стопку прямо по клеткам ядра.
+            // Анимации удаления нет, поэтому событие LineClear с длительностью не записывается:
+            // удаленные строки видны по маске в событии Lock.
+            if (completeRows != 0) {
+                metrics.linesCleared(Integer.bitCount(completeRows));
+                notifyOnRowsEliminated(Integer.bitCount(completeRows));
+            }
+            notifyOnDropped();
+            return;
+        }
+        int[][] tetrominoMatrix = currentTetromino.getDefinition().getMatrix(engine.getRotation());
+        final int type = currentTetromino.getDefinition().getType();
+        final int pieceX = engine.getX();
+        final int pieceY = engine.getY();
 
         for (int i = 0; i < tetrominoMatrix.length; i++) {
             for (int j = 0; j < tetrominoMatrix[i].length; j++) {
 
-                final int x = this.x + j;
-                final int y = this.y + i;
-
-                if (tetrominoMatrix[i][j] == 1 && y < BLOCKS_PER_COLUMN + HIDDEN_ROWS && x < BLOCKS_PER_ROW) {
-                    final Rectangle rectangle = new Rectangle();
-
-                    ChangeListener<Number> changeListener = new ChangeListener<Number>() {
-                        @Override
-                        public void changed(ObservableValue<? extends Number> observableValue, Number number, Number number2) {
-                            rectangle.setWidth(number2.doubleValue());
-                            rectangle.setHeight(number2.doubleValue());
-                            rectangle.setTranslateX(number2.doubleValue() * x);
-                            rectangle.setTranslateY(number2.doubleValue() * ((Integer) rectangle.getProperties().get("y")));
-                        }
-                    };
-                    squareSize.addListener(new WeakChangeListener<>(changeListener));
-                    rectangle.setUserData(changeListener);
-                    rectangle.getProperties().put("y", y - HIDDEN_ROWS);
-                    rectangle.setWidth(squareSize.doubleValue());
-                    rectangle.setHeight(squareSize.doubleValue());
-                    rectangle.setTranslateX(squareSize.doubleValue() * x);
-                    rectangle.setTranslateY(squareSize.doubleValue() * ((Integer) rectangle.getProperties().get("y")));
-
-                    rectangle.setFill(currentTetromino.getFill());
-                    ((Light.Distant) currentTetromino.getLighting().getLight()).azimuthProperty().set(225);
-                    rectangle.setEffect(currentTetromino.getLighting());
-
-                    rectangle.setArcHeight(7);
-                    rectangle.setArcWidth(7);
-                    // Назначение прямоугольника матрице доски
-                    matrix[y][x] = rectangle;
-                    getChildren().add(rectangle);
+                final int x = pieceX + j;
+                final int y = pieceY + i;
+
+                if (tetrominoMatrix[i][j] == 1) {
+                    // Прямоугольник добавляется в группу своей строки
+                    rows[y].getChildren().add(obtainCell(x, type));
                 }
             }
         }
-        ParallelTransition fallRowsTransition = new ParallelTransition();
-        ParallelTransition deleteRowTransition = new ParallelTransition();
         int fall = 0;
-        for (int i = y + currentTetromino.getMatrix().length - 1; i >= 0; i--) {
-            if (i < matrix.length) {
-                boolean rowComplete = i >= y;
-
-                // Assume the row is complete. Let's prove the opposite.
+        int fallen = 0;
+        // Строки выше вершины стопки пусты, их сдвигать не нужно.
+        final int stackTop = engine.getStackTop();
+        final GameEvents.LineClear lineClear = completeRows != 0
+                ? GameEvents.beginLineClear(Integer.bitCount(completeRows), pieceY, stackTop) : null;
+        for (int i = pieceY + tetrominoMatrix.length - 1; i >= stackTop; i--) {
+            if (i < rows.length) {
+                boolean rowComplete = i >= pieceY && (completeRows & (1 << (i - pieceY))) != 0;
                 if (rowComplete) {
-                    for (int j = 0; j < matrix[i].length; j++) {
-                        if (matrix[i][j] == null) {
-                            rowComplete = false;
-                            break;
-                        }
-                    }
-                }
-                if (rowComplete) {
-                    deleteRowTransition.getChildren().add(deleteRow(i));
+                    deleteRow(i);
                     fall++;
                 } else if (fall > 0) {
-                    fallRowsTransition.getChildren().add(fallRow(i, fall));
+                    // Строки падают после того, как удаляемые строки погаснут.
+                    fallRow(i, fall, DELETE_SECONDS);
+                    fallen++;
                 }
             }
         }
+        // Верхние строки, группы которых сдвинулись вниз, получают пустые группы.
+        for (int i = stackTop; i < stackTop + fall; i++) {
+            rows[i] = obtainRow(i);
+        }
         final int f = fall;
-        fallRowsTransition.setOnFinished(new EventHandler<ActionEvent>() {
-            public void handle(ActionEvent actionEvent) {
-                notifyOnDropped();
-            }
-        });
+        final int rowsFallen = fallen;
 
         //Если хотя бы одна строка была удалена
         if (f > 0) {
             notifyOnRowsEliminated(f);
+            clock.schedule(DELETE_SECONDS + FALL_SECONDS, new Runnable() {
+                @Override
+                public void run() {
+                    metrics.linesCleared(f, System.nanoTime() - lockTime);
+                    GameEvents.endLineClear(lineClear, rowsFallen, clock.getAnimationCount());
+                    notifyOnDropped();
+                }
+            });
         }
-        final SequentialTransition sequentialTransition = new SequentialTransition();
-        sequentialTransition.getChildren().add(deleteRowTransition);
-        sequentialTransition.getChildren().add(fallRowsTransition);
-        sequentialTransition.setOnFinished(new EventHandler<ActionEvent>() {
-            @Override
-            public void handle(ActionEvent actionEvent) {
-                //sequentialTransition.getChildren().clear();
-                spawnTetromino();
-            }
-        });
         //Кэшированные узлы приводят к утечке памяти
         //currentTetromino.setCache(false);
-        getChildren().remove(currentTetromino);
+        clock.cancel(currentTetromino, GameClock.Property.TRANSLATE_X);
+        clock.cancel(currentTetromino, GameClock.Property.TRANSLATE_Y);
+        clock.cancel(currentTetromino, GameClock.Property.ROTATE);
+        layer.getChildren().remove(currentTetromino);
+        removeGhost();
         currentTetromino = null;
-        registerPausableAnimation(sequentialTransition);
-        sequentialTransition.playFromStart();
         notifyOnDropped();
     }
 
-   //возвращает переход, который анимирует выпадающую строку
-    private Transition fallRow(final int i, final int by) {// i-индекс строки.
-        ParallelTransition parallelTransition = new ParallelTransition();
-
+   //Анимирует выпадающую строку после задержки delay секунд. Строка сдвигается вся целиком.
+    private void fallRow(final int i, final int by, double delay) {// i-индекс строки.
         if (by > 0) {
-            for (int j = 0; j < matrix[i].length; j++) {//параметр по количеству строк
-                final Rectangle rectangle = matrix[i][j];
-
-                if (rectangle != null) {
-                    // Отмена привязки к исходному положению y, чтобы позволить прямоугольнику переместиться в новое положение
-                    //rectangle.translateYProperty().unbind();
-                    final TranslateTransition translateTransition = new TranslateTransition(Duration.seconds(0.1), rectangle);
-                    rectangle.getProperties().put("y", i - HIDDEN_ROWS + by);
-
-                    translateTransition.toYProperty().bind(squareSize.multiply(i - HIDDEN_ROWS + by));
-                    translateTransition.setOnFinished(new EventHandler<ActionEvent>() {
-                        @Override
-                        public void handle(ActionEvent actionEvent) {
-                            translateTransition.toYProperty().unbind();
-
-                            //rectangle.translateYProperty().bind(squareSize.multiply(i - HIDDEN_ROWS + by));
-                        }
-                    });
-                    parallelTransition.getChildren().add(translateTransition);
-                }
-                matrix[i + by][j] = rectangle;
-            }
+            Group row = rows[i];
+            clock.animate(row, GameClock.Property.TRANSLATE_Y, i - HIDDEN_ROWS, i - HIDDEN_ROWS + by,
+                    FALL_SECONDS, Interpolator.EASE_BOTH, delay, 1, false, null);
+            rows[i + by] = row;
         }
-        return parallelTransition;
     }
 
-  //Удаляет строку на доске.
-    private Transition deleteRow(int rowIndex) {//RowIndex - индекс строки.
-
-        ParallelTransition parallelTransition = new ParallelTransition();
+  //Удаляет строку на доске: строка мигает и исчезает, после чего её группа и клетки возвращаются в пул.
+    private void deleteRow(int rowIndex) {//RowIndex - индекс строки.
+        final Group row = rows[rowIndex];
+        clock.animate(row, GameClock.Property.OPACITY, 1, 0, DELETE_SECONDS / 3, Interpolator.EASE_BOTH,
+                0, 3, true, new Runnable() {
+                    @Override
+                    public void run() {
+                        recycleRow(row);
+                    }
+                });
+    }
 
-        for (int i = rowIndex; i >= 0; i--) {
-            for (int j = 0; j < BLOCKS_PER_ROW; j++) {
-                if (i > 1) {
-                    final Rectangle rectangle = matrix[i][j];
+    //Возвращает пустую группу для строки rowIndex: из пула или новую.
+    private Group obtainRow(int rowIndex) {
+        Group row = rowPool.poll();
+        if (row == null) {
+            row = new Group();
+            stack.getChildren().add(row);
+        }
+        row.setOpacity(1);
+        row.setTranslateY(rowIndex - HIDDEN_ROWS);
+        return row;
+    }
 
-                    if (i == rowIndex && rectangle != null) {
-                        FadeTransition fadeTransition = new FadeTransition(Duration.seconds(0.27), rectangle);
-                        fadeTransition.setToValue(0);
-                        fadeTransition.setCycleCount(3);
-                        fadeTransition.setAutoReverse(true);
-                        fadeTransition.setOnFinished(new EventHandler<ActionEvent>() {
-                            public void handle(ActionEvent actionEvent) {
-                                getChildren().remove(rectangle);
-                            }
-                        });
-                        parallelTransition.getChildren().add(fadeTransition);
-                    }
+    //Возвращает группу строки и её прямоугольники в пул. Группа остается в слое пустой.
+    private void recycleRow(Group row) {
+        for (Node node : row.getChildren()) {
+            cellPool.push((Rectangle) node);
+        }
+        row.getChildren().clear();
+        rowPool.push(row);
+    }
 
-                }
-            }
+    //Делает все строки пустыми.
+    private void resetRows() {
+        rowPool.clear();
+        for (Node node : stack.getChildren()) {
+            recycleRow((Group) node);
+        }
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = obtainRow(i);
         }
-        return parallelTransition;//возвращает переход, который анимирует удаляемую строку.
     }
     //Очищает игровое поле и ожидающие тетромино.
     public void clear() {
-        for (int i = 0; i < BLOCKS_PER_COLUMN + HIDDEN_ROWS; i++) {
-            for (int j = 0; j < BLOCKS_PER_ROW; j++) {
-                matrix[i][j] = null;
-            }
+        gameLoop.stop();
+        stopRecording();
+        replayPlayer = null;
+        gameLoop.setSpeed(1);
+        simulation.stop();
+        history.clear();
+        clock.clear();
+        if (canvasRenderer == null) {
+            layer.getChildren().setAll(stack);
+            resetRows();
         }
-        getChildren().clear();
-        getChildren().remove(currentTetromino);
+        ghostTetromino = null;
         currentTetromino = null;
-        waitingTetrominos.clear();
-    }
-    //Вычисляет, будет ли тетромино пересекаться с доской, передавая матрицу, которая будет у тетромино.
-    //Он пересекается либо в том случае, если попадает в другой тетромино, либо в том случае,
-    // если он превышает левую, правую или нижнюю границу.
-    //*
-    //* @* @ param target Matrix - параметр целевой матрицы - матрица тетромино.
-    //* @* @param target параметр нацелен на целевую позицию X.
-    //* @* @param target параметр нацелен на целевую позицию Y.
-    //* @возвращает значение True, если оно действительно пересекается с доской, в противном случае значение false.
-    //*/
-
-    private boolean intersectsWithBoard(final int[][] targetMatrix, int targetX, int targetY) {
-        Rectangle[][] boardMatrix = matrix;
-
-        for (int i = 0; i < targetMatrix.length; i++) {
-            for (int j = 0; j < targetMatrix[i].length; j++) {
-
-                boolean boardBlocks = false;
-                int x = targetX + j;
-                int y = targetY + i;
-
-                if (x < 0 || x >= boardMatrix[i].length || y >= boardMatrix.length) {
-                    boardBlocks = true;
-                } else if (boardMatrix[y][x] != null) {
-                    boardBlocks = true;
-                }
-
-                if (boardBlocks && targetMatrix[i][j] == 1) {
-                    return true;
-                }
-            }
+        pieceQueue = null;
+        spawned.set(0);
+        if (canvasRenderer != null) {
+            canvasRenderer.render();
         }
-        return false;
     }
-
-   //Запускает игровое поле, создавая нового тетромино.
-    public void start() {
+    /**
+     * Запускает игровое поле, создавая нового тетромино.
+     *
+     * @param seed начальное значение генератора фигур. Одинаковый seed дает одинаковую последовательность фигур.
+     */
+    public void start(long seed) {
         clear();
+        pieceQueue = new PieceQueue(new PieceGenerator(GENERATOR_MODE, seed), PREVIEWS);
         Platform.runLater(new Runnable() {
             @Override
             public void run() {
                 requestFocus();
             }
         });
-        spawnTetromino();
+        simulation.start(pieceQueue);
+        // Снимок прежней игры больше не нужен, новая запишется через SAVE_TICKS тактов.
+        if (snapshot != null) {
+            snapshot.discard();
+        }
+        nextSnapshotTick = GameSnapshot.SAVE_TICKS;
+        if (RECORD_DIRECTORY != null) {
+            recorder = new ReplayRecorder(RECORD_DIRECTORY.resolve("tetris-" + System.currentTimeMillis() + ".ttr"),
+                    simulation, seed, GENERATOR_MODE, ReplayRecorder.KEYFRAME_TICKS);
+        }
+        gameLoop.start();
     }
-    //Опускает тетромино в следующее возможное положение.
-    public void dropDown() {
-        if (currentTetromino == null) {
+
+    /**
+     * Воспроизводит записанную игру. Ввод игрока во время воспроизведения не принимается.
+     *
+     * @param player запись для доски того же размера.
+     * @param speed  скорость воспроизведения: 1 - как в игре, 4 - в четыре раза быстрее.
+     */
+    public void replay(ReplayPlayer player, double speed) {
+        clear();
+        pieceQueue = player.createQueue();
+        replayPlayer = player;
+        player.start(simulation, new ReplayPlayer.Controls() {
+            @Override
+            public void move(int dx) {
+                Board.this.move(dx > 0 ? HorizontalDirection.RIGHT : HorizontalDirection.LEFT);
+            }
+
+            @Override
+            public void rotate(boolean clockwise) {
+                Board.this.rotate(clockwise ? HorizontalDirection.RIGHT : HorizontalDirection.LEFT);
+            }
+
+            @Override
+            public void setSoftDrop(boolean softDrop) {
+                if (softDrop) {
+                    moveDownFast();
+                } else {
+                    moveDown();
+                }
+            }
+
+            @Override
+            public void hardDrop() {
+                dropDown();
+            }
+        }, pieceQueue);
+        gameLoop.setSpeed(speed);
+        gameLoop.start();
+    }
+
+    /**
+     * Задает файл, в который пишется снимок игры: периодически, при паузе и по saveSnapshot().
+     *
+     * @param score счет, который сохраняется вместе с игрой.
+     */
+    public void setSnapshot(GameSnapshot snapshot, ObservableIntegerValue score) {
+        this.snapshot = snapshot;
+        this.score = score;
+    }
+
+    //Записывает снимок идущей игры. Запись воспроизводимой игры не сохраняется.
+    public void saveSnapshot() {
+        if (snapshot == null || replayPlayer != null || !simulation.isRunning()) {
             return;
         }
+        nextSnapshotTick = simulation.getTick() + GameSnapshot.SAVE_TICKS;
+        try {
+            snapshot.save(simulation, pieceQueue.getGenerator().getMode(), score.get(), spawned.get());
+        } catch (IOException e) {
+            // Файл недоступен: игра продолжается без снимков.
+            snapshot = null;
+        }
+    }
+
+    /**
+     * Продолжает игру из снимка. Доска должна иметь размер сохраненной игры.
+     *
+     * @return false, если снимка нет или он сделан для доски другого размера.
+     */
+    public boolean resume() {
+        if (snapshot == null || !snapshot.hasGame() || snapshot.getWidth() != engine.getWidth()
+                || snapshot.getHeight() != engine.getHeight()) {
+            return false;
+        }
+        clear();
+        pieceQueue = new PieceQueue(new PieceGenerator(snapshot.getMode(), 0), snapshot.getPreviews());
+        snapshot.restore(simulation, pieceQueue);
+        nextSnapshotTick = simulation.getTick() + GameSnapshot.SAVE_TICKS;
+        spawned.set(snapshot.getSpawned());
+        currentPiece = engine.getPiece();
+        history.reset(engine);
+        if (canvasRenderer != null) {
+            canvasRenderer.render();
+        } else {
+            showStack();
+            if (engine.hasPiece()) {
+                showPiece(engine.getPiece());
+            }
+        }
+        if (simulation.isRunning()) {
+            gameLoop.start();
+        }
+        return true;
+    }
+
+    /**
+     * Возвращает игру на steps появлений фигур назад. Отличающиеся строки находятся сравнением
+     * ссылок на строки истории, и заново строятся только они. Запись игры при этом заканчивается.
+     *
+     * @return состояние, к которому вернулась игра, или null, если вернуться нельзя.
+     */
+    public BoardHistory.Version rewind(int steps) {
+        // Пока новая фигура не появилась, один шаг назад - это появление только что зафиксированной фигуры.
+        int index = history.size() - (engine.hasPiece() ? 1 : 0) - steps;
+        if (steps <= 0 || index < 0 || replayPlayer != null || simulation.getPieceQueue() == null) {
+            return null;
+        }
+        stopRecording();
+        // Анимации удаления и падения строк доводятся до конца, чтобы группы строк стояли на своих местах.
+        clock.complete();
+        removeGhost();
+        // Узлы фигуры убираются все, как в clear(): после окончания игры на доске остается узел
+        // последней фигуры, хотя currentTetromino уже null.
+        if (canvasRenderer == null) {
+            layer.getChildren().setAll(stack);
+        }
+        currentTetromino = null;
+        BoardHistory.Version version = history.get(index);
+        for (int row = 0; row < rows.length; row++) {
+            byte[] cells = version.getRow(row);
+            if (cells != history.getRow(row)) {
+                engine.setRow(row, cells);
+                if (canvasRenderer == null) {
+                    showRow(row, cells);
+                }
+            }
+        }
+        engine.updateSurface();
+        pieceQueue = simulation.getPieceQueue();
+        history.rewind(index, pieceQueue);
+        simulation.respawn(version.getPiece(), version.getTick());
+        spawned.set(version.getSpawned());
+        currentPiece = version.getPiece();
+        if (canvasRenderer != null) {
+            canvasRenderer.render();
+        } else {
+            showPiece(currentPiece);
+        }
+        nextSnapshotTick = simulation.getTick() + GameSnapshot.SAVE_TICKS;
+        if (!clock.isPaused()) {
+            gameLoop.start();
+        }
+        return version;
+    }
 
-        moveTransition.stop();
-        moveDownFastTransition.stop();
-        dropDownTransition.stop();
+    //Прямоугольник зафиксированной клетки фигуры type в столбце x, по возможности из пула.
+    //Номер фигуры хранится в узле, чтобы после изменения размера клетки выбрать изображение заново.
+    private Rectangle obtainCell(int x, int type) {
+        Rectangle rectangle = cellPool.poll();
+        if (rectangle == null) {
+            rectangle = new Rectangle(1, 1);
+        }
+        rectangle.setTranslateX(x);
+        rectangle.setUserData(type);
+        // Освещение зафиксированной клетки уже нарисовано в изображении, эффект не нужен.
+        rectangle.setFill(BlockSprites.shared().getPattern(type, 0, squareSize.get()));
+        return rectangle;
+    }
 
-        do {
-            y++;
+    //Заменяет изображения клеток стопки и текущей фигуры изображениями нового размера.
+    //Иначе масштаб слоя растягивает прежние изображения, и клетки становятся размытыми.
+    private void refreshSprites() {
+        double size = squareSize.get();
+        if (!(size > 0)) {
+            return;
         }
-        while (!intersectsWithBoard(currentTetromino.getMatrix(), x, y));
-        y--;
-        isDropping = true;
-        dropDownTransition.setNode(currentTetromino);
-        dropDownTransition.toYProperty().bind(squareSize.multiply(y - Board.HIDDEN_ROWS));
-        dropDownTransition.setOnFinished(new EventHandler<ActionEvent>() {
-            public void handle(ActionEvent actionEvent) {
-                isDropping = false;
-                tetrominoDropped();
+        for (Group row : rows) {
+            for (Node node : row.getChildren()) {
+                ((Rectangle) node).setFill(BlockSprites.shared().getPattern((Integer) node.getUserData(), 0, size));
             }
-        });
-        registerPausableAnimation(dropDownTransition);
-        dropDownTransition.playFromStart();
+        }
+        if (currentTetromino != null) {
+            currentTetromino.refreshSprites();
+        }
+        if (ghostTetromino != null) {
+            ghostTetromino.refreshSprites();
+        }
+    }
+
+    //Заново строит прямоугольники строки row по её клеткам.
+    private void showRow(int row, byte[] cells) {
+        Group group = rows[row];
+        for (Node node : group.getChildren()) {
+            cellPool.push((Rectangle) node);
+        }
+        group.getChildren().clear();
+        for (int x = 0; x < cells.length; x++) {
+            if (cells[x] != 0) {
+                group.getChildren().add(obtainCell(x, cells[x] - 1));
+            }
+        }
+    }
+
+    //Создает прямоугольники всех занятых клеток стопки по клеткам ядра.
+    private void showStack() {
+        for (int y = engine.getStackTop(); y < rows.length; y++) {
+            for (int x = 0; x < engine.getWidth(); x++) {
+                int cell = engine.getCell(x, y);
+                if (cell != 0) {
+                    rows[y].getChildren().add(obtainCell(x, cell - 1));
+                }
+            }
+        }
+    }
 
+    //Воспроизводится ли запись.
+    public boolean isReplaying() {
+        return replayPlayer != null;
+    }
+
+    //Записывает ввод игрока, если игра записывается.
+    private void record(int op) {
+        if (recorder != null) {
+            recorder.input(op);
+        }
+    }
+
+    //Заканчивает запись игры. Остаток записи пишется в файл в потоке записи.
+    private void stopRecording() {
+        if (recorder != null) {
+            recorder.close();
+            recorder = null;
+        }
+    }
+    //Опускает тетромино в следующее возможное положение.
+    public void dropDown() {
+        record(ReplayFormat.HARD_DROP);
+        int oldY = engine.getY();
+        if (!simulation.hardDrop()) {
+            return;
+        }
+        GameEvents.drop(engine.getY() - oldY, engine.getX(), engine.getY());
+        if (currentTetromino == null) {
+            return;
+        }
+
+        // Фигура фиксируется по такту игры, когда переход уже закончится.
+        clock.animate(currentTetromino, GameClock.Property.TRANSLATE_Y, engine.getY() - Board.HIDDEN_ROWS,
+                0.1, Interpolator.EASE_IN);
     }
 
     /**
@@ -495,50 +771,36 @@ final class Board extends StackPane {
      */
     public boolean rotate(final HorizontalDirection direction) {
         boolean result = false;
-        if (currentTetromino == null) {
-            result = false;
-        } else {
-            int[][] matrix = currentTetromino.getMatrix();
-
-            int[][] newMatrix = new int[matrix.length][matrix.length];
-
-
-            for (int i = 0; i < matrix.length; i++) {
-                for (int j = 0; j < matrix[i].length; j++) {
-                    if (direction == HorizontalDirection.RIGHT) {
-                        newMatrix[j][matrix.length - 1 - i] = matrix[i][j];
-                    } else {
-                        newMatrix[matrix[i].length - 1 - j][i] = matrix[i][j];
-                    }
+        int oldX = engine.getX();
+        int oldY = engine.getY();
+        record(direction == HorizontalDirection.RIGHT ? ReplayFormat.ROTATE_RIGHT : ReplayFormat.ROTATE_LEFT);
+        // Состояния поворота вычислены заранее, ядро перебирает смещения из таблицы фигуры.
+        if (simulation.rotate(direction == HorizontalDirection.RIGHT)) {
+            result = true;
+            if (currentTetromino != null) {
+                updateGhost();
+                if (engine.getX() != oldX) {
+                    clock.animate(currentTetromino, GameClock.Property.TRANSLATE_X, engine.getX(), 0.1, Interpolator.EASE_BOTH);
+                }
+                if (engine.getY() != oldY) {
+                    // Смещение по вертикали: фигура сразу переносится в новую строку.
+                    clock.cancel(currentTetromino, GameClock.Property.TRANSLATE_Y);
+                    currentTetromino.setTranslateY(engine.getY() - Board.HIDDEN_ROWS);
                 }
-            }
-
-            if (!intersectsWithBoard(newMatrix, x, y)) {
-                currentTetromino.setMatrix(newMatrix);
 
                 int f = direction == HorizontalDirection.RIGHT ? 1 : -1;
 
-                rotateTransition.setFromAngle(rotateTransition.getToAngle());
-                rotateTransition.setToAngle(rotateTransition.getToAngle() + f * 90);
-
-                KeyValue kv = new KeyValue(((Light.Distant) currentTetromino.getLighting().getLight()).azimuthProperty(), 360 - 225 + 90 - rotateTransition.getToAngle());
-                KeyFrame keyFrame = new KeyFrame(rotateTransition.getDuration(), kv);
-                Timeline lightingAnimation = new Timeline(keyFrame);
+                double fromAngle = rotateAngle;
+                rotateAngle += f * 90;
 
-                final ParallelTransition parallelTransition = new ParallelTransition(rotateTransition, lightingAnimation);
-                registerPausableAnimation(parallelTransition);
-                parallelTransition.setOnFinished(new EventHandler<ActionEvent>() {
-                    @Override
-                    public void handle(ActionEvent actionEvent) {
-                        // clear, because otherwise parallelTransition won't be gc'ed because it has reference to rotateTransition.
-                        parallelTransition.getChildren().clear();
-                    }
-                });
-                parallelTransition.playFromStart();
-                result = true;
+                // Освещение не анимируется: клетки сразу берут изображения для нового поворота.
+                currentTetromino.setLightRotation(engine.getRotation());
+                clock.animate(currentTetromino, GameClock.Property.ROTATE, fromAngle, rotateAngle, 0.1, Interpolator.EASE_BOTH);
             }
         }
 
+        GameEvents.rotate(direction == HorizontalDirection.RIGHT, result, engine.getRotation(), engine.getX(), engine.getY(),
+                clock.getAnimationCount());
         if (!result) {
             notifyInvalidMove();
         } else {
@@ -553,24 +815,14 @@ final class Board extends StackPane {
      * @возвращает значение True, если перемещение прошло успешно. Ложно, если движение было заблокировано доской.
      */
     public boolean move(final HorizontalDirection direction) {
-        boolean result;
-        if (currentTetromino == null || isDropping) {
-            result = false;
-        } else {
-            int i = direction == HorizontalDirection.RIGHT ? 1 : -1;
-            x += i;
-            // Если он не движется, проверьте только текущее положение y.
-            // Если он движется, также проверьте целевое положение y.
-            if (!moving && !intersectsWithBoard(currentTetromino.getMatrix(), x, y) || moving && !intersectsWithBoard(currentTetromino.getMatrix(), x, y) && !intersectsWithBoard(currentTetromino.getMatrix(), x, y + 1)) {
-                translateTransition.toXProperty().unbind();
-                translateTransition.toXProperty().bind(squareSize.multiply(x));
-                translateTransition.playFromStart();
-                result = true;
-            } else {
-                x -= i;
-                result = false;
-            }
+        int i = direction == HorizontalDirection.RIGHT ? 1 : -1;
+        record(i > 0 ? ReplayFormat.MOVE_RIGHT : ReplayFormat.MOVE_LEFT);
+        boolean result = simulation.move(i);
+        if (result && currentTetromino != null) {
+            updateGhost();
+            clock.animate(currentTetromino, GameClock.Property.TRANSLATE_X, engine.getX(), 0.1, Interpolator.EASE_BOTH);
         }
+        GameEvents.move(i, result, engine.getX(), engine.getY(), clock.getAnimationCount());
         if (!result) {
             notifyInvalidMove();
         } else {
@@ -578,71 +830,63 @@ final class Board extends StackPane {
         }
         return result;
     }
-    //Перемещает тетромино на одно поле вниз.
+    //Возвращает обычную скорость падения тетромино (клавиша "Вниз" отпущена).
     public void moveDown() {
-        if (!isDropping && currentTetromino != null) {
-            moveDownFastTransition.stop();
-            moving = true;
-            /// Если он может переместиться в следующую позицию y, сделайте это!
-            if (!intersectsWithBoard(currentTetromino.getMatrix(), x, y + 1) && !isDropping) {
-                //moveDownTransition.setFromY(moveDownTransition.getNode().getTranslateY());
-                moveDownTransition.toYProperty().unbind();
-                moveDownTransition.toYProperty().bind(squareSize.multiply(y + 1 - Board.HIDDEN_ROWS));
-                moveTransition.playFromStart();
-            } else {
-                tetrominoDropped();
-            }
-        }
+        record(ReplayFormat.SOFT_DROP_OFF);
+        simulation.setSoftDrop(false);
     }
-    //Быстро перемещает текущий тетромино вниз, если он еще не падает.
+    //Быстро перемещает текущий тетромино вниз, пока нажата клавиша "Вниз".
     public void moveDownFast() {
-        if (!isDropping) {
-            // Остановка обычного перехода перемещения.
-            moveTransition.stop();
-           //проверка, не будет ли следующая позиция пересекаться с доской.
-            if (!intersectsWithBoard(currentTetromino.getMatrix(), x, y + 1)) {
-                //Если может двигаться, то двигай
-                moveDownFastTransition.toYProperty().unbind();
-                moveDownFastTransition.toYProperty().bind(squareSize.multiply(y + 1 - Board.HIDDEN_ROWS));
-                moveDownFastTransition.playFromStart();
-            } else {
-            // В противном случае он достиг земли.
-                tetrominoDropped();
-            }
-        }
+        record(ReplayFormat.SOFT_DROP_ON);
+        simulation.setSoftDrop(true);
     }
 
 //Приостанавливает работу доски.
     public void pause() {
-        for (Animation animation : runningAnimations) {
-            if (animation.getStatus() == Animation.Status.RUNNING) {
-                animation.pause();
-            }
-        }
+        saveSnapshot();
+        gameLoop.stop();
+        clock.pause();
     }
 
   //Воспроизведение доски происходит снова после того, как она была приостановлена.
     public void play() {
-        for (Animation animation : runningAnimations) {
-            if (animation.getStatus() == Animation.Status.PAUSED) {
-                animation.play();
-            }
+        clock.play();
+        if (simulation.isRunning()) {
+            gameLoop.start();
         }
         requestFocus();
     }
 
     /**
-     * * Получает ожидающих тетромино, которые вот-вот появятся на свет.
-     * Следующим будет создан первый элемент.
-     * @возвращает список тетромино, находящихся в очереди.
+     * Получает очередь фигур, которые вот-вот появятся на свет.
+     * @возвращает очередь или null, если игра не идет.
      */
-    public ObservableList<Tetromino> getWaitingTetrominos() {
-        return waitingTetrominos;
+    public PieceQueue getPieceQueue() {
+        return pieceQueue;
+    }
+
+    //Игровое ядро доски. Изменять его можно только через методы доски.
+    BoardEngine getEngine() {
+        return engine;
+    }
+
+    //Количество фигур, появившихся в текущей игре. По его изменению обновляется очередь в Preview.
+    public ReadOnlyIntegerProperty spawnedProperty() {
+        return spawned.getReadOnlyProperty();
+    }
+
+    //Количество выполняющихся анимаций доски.
+    public int getAnimationCount() {
+        return clock.getAnimationCount();
     }
 
     public double getSquareSize() {
         return squareSize.get();
     }
+
+    public ReadOnlyDoubleProperty squareSizeProperty() {
+        return squareSize;
+    }
     /**
      * Добавляет слушателя на доску, который получает уведомления
      * об определенных событиях.
@@ -662,6 +906,18 @@ final class Board extends StackPane {
         boardListeners.remove(boardListener);
     }
 
+    /**
+     * Возвращает конвейер, через который слушатели получают события в своих потоках.
+     * Конвейер подключается к доске как обычный слушатель при первом обращении.
+     */
+    public BoardEventPipeline eventPipeline() {
+        if (eventPipeline == null) {
+            eventPipeline = new BoardEventPipeline();
+            addBoardListener(eventPipeline);
+        }
+        return eventPipeline;
+    }
+
   //Позволяет прослушивать определенные события на доске
     public static interface BoardListener extends EventListener {
 
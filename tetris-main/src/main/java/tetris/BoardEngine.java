@@ -0,0 +1,446 @@
+package tetris;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+//Игровое ядро без JavaFX: состояние доски хранится в виде битовых масок строк.
+//Каждая строка доски - это одно или несколько слов long, бит j соответствует столбцу j.
+//Проверка пересечений, слияние и удаление строк выполняются побитовыми операциями,
+//поэтому ядро может работать вне потока JavaFX (например, на серверных потоках).
+
+final class BoardEngine {
+    //Количество столбцов доски.
+    private final int width;
+    //Количество строк доски вместе со скрытыми.
+    private final int height;
+    //Количество слов long на одну строку.
+    private final int words;
+    //Битовые маски строк: строка row занимает слова [row * words, (row + 1) * words).
+    private final long[] rows;
+    //Маска полностью заполненной строки (по словам).
+    private final long[] fullRow;
+    //Цвета занятых клеток: 0 - клетка пуста, иначе номер фигуры + 1.
+    private final byte[] cells;
+    //Количество занятых клеток в каждой строке.
+    //Обновляется при слиянии и удалении строк, поэтому заполненность строки проверяется за O(1).
+    private final int[] rowFill;
+    //Индекс самой верхней непустой строки (height, если доска пуста).
+    //Строки выше неё пусты и при удалении строк не сдвигаются.
+    private int stackTop;
+    //Поверхность стопки: для каждого столбца индекс верхней занятой клетки (height, если столбец пуст).
+    //По ней строка приземления фигуры находится за несколько обращений.
+    private final int[] columnTops;
+    //Увеличивается при каждом изменении стопки.
+    private int stackVersion;
+    //Текущая фигура, её состояние поворота и положение.
+    private TetrominoDefinition piece;
+    private int rotation;
+    private int x, y;
+
+    //Создание пустой доски заданного размера.
+    BoardEngine(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.words = (width + 63) >>> 6;
+        this.rows = new long[height * words];
+        this.cells = new byte[height * width];
+        this.rowFill = new int[height];
+        this.stackTop = height;
+        this.columnTops = new int[width];
+        Arrays.fill(columnTops, height);
+        this.fullRow = new long[words];
+        for (int w = 0; w < words; w++) {
+            int bits = Math.min(64, width - (w << 6));
+            fullRow[w] = bits == 64 ? -1L : (1L << bits) - 1;
+        }
+    }
+
+    //Копирует доску и текущую фигуру из other того же размера, например для перебора ходов.
+    public void copyFrom(BoardEngine other) {
+        System.arraycopy(other.rows, 0, rows, 0, rows.length);
+        System.arraycopy(other.cells, 0, cells, 0, cells.length);
+        System.arraycopy(other.rowFill, 0, rowFill, 0, rowFill.length);
+        System.arraycopy(other.columnTops, 0, columnTops, 0, columnTops.length);
+        stackTop = other.stackTop;
+        stackVersion = other.stackVersion;
+        piece = other.piece;
+        rotation = other.rotation;
+        x = other.x;
+        y = other.y;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    //Очищает доску и убирает текущую фигуру.
+    public void clear() {
+        Arrays.fill(rows, 0L);
+        Arrays.fill(cells, (byte) 0);
+        Arrays.fill(rowFill, 0);
+        Arrays.fill(columnTops, height);
+        stackTop = height;
+        stackVersion++;
+        piece = null;
+        rotation = 0;
+        x = 0;
+        y = 0;
+    }
+
+    //Возвращает true, если клетка (x, y) занята.
+    public boolean isOccupied(int x, int y) {
+        return (rows[y * words + (x >>> 6)] & (1L << x)) != 0;
+    }
+
+    //Возвращает цвет клетки: 0 - пусто, иначе номер фигуры + 1.
+    public int getCell(int x, int y) {
+        return cells[y * width + x];
+    }
+
+    //Копирует цвета всех клеток построчно (width * height байт) в target.
+    public void copyCells(byte[] target) {
+        System.arraycopy(cells, 0, target, 0, cells.length);
+    }
+
+    //Возвращает true, если строка полностью заполнена.
+    public boolean isRowComplete(int row) {
+        return rowFill[row] == width;
+    }
+
+    //Возвращает true, если в строке нет ни одной занятой клетки.
+    public boolean isRowEmpty(int row) {
+        return rowFill[row] == 0;
+    }
+
+    //Возвращает количество занятых клеток в строке.
+    public int getRowFill(int row) {
+        return rowFill[row];
+    }
+
+    //Возвращает индекс самой верхней непустой строки или getHeight(), если доска пуста.
+    public int getStackTop() {
+        return stackTop;
+    }
+
+    //Возвращает индекс верхней занятой клетки столбца или getHeight(), если столбец пуст.
+    public int getColumnTop(int column) {
+        return columnTops[column];
+    }
+
+    //Версия стопки: меняется при слиянии, удалении строк и очистке доски.
+    public int getStackVersion() {
+        return stackVersion;
+    }
+
+    /**
+     * Вычисляет, пересекается ли фигура с доской в заданной позиции.
+     * Пересечение происходит, если фигура попадает на занятую клетку или выходит
+     * за левую, правую, верхнюю или нижнюю границу.
+     *
+     * @param definition фигура.
+     * @param rotation   состояние поворота.
+     * @param targetX    целевая позиция X.
+     * @param targetY    целевая позиция Y.
+     * @return true, если фигура пересекается с доской.
+     */
+    public boolean intersects(TetrominoDefinition definition, int rotation, int targetX, int targetY) {
+        int[] masks = definition.getRowMasks(rotation);
+        for (int i = 0; i < masks.length; i++) {
+            int mask = masks[i];
+            if (mask != 0 && intersectsRow(mask, targetX, targetY + i)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    //Проверяет одну строку фигуры (маска mask, бит j - столбец j) против строки доски row.
+    private boolean intersectsRow(int mask, int targetX, int row) {
+        if (row < 0 || row >= height) {
+            return true;
+        }
+        int low = Integer.numberOfTrailingZeros(mask);
+        int high = 31 - Integer.numberOfLeadingZeros(mask);
+        if (targetX + low < 0 || targetX + high >= width) {
+            return true;
+        }
+        int column = targetX + low;
+        long bits = (mask >>> low) & 0xFFFFFFFFL;
+        int index = row * words + (column >>> 6);
+        int shift = column & 63;
+        if ((rows[index] & (bits << shift)) != 0) {
+            return true;
+        }
+        // Часть маски, которая перешла в следующее слово строки.
+        return shift != 0 && (bits >>> (64 - shift)) != 0 && (rows[index + 1] & (bits >>> (64 - shift))) != 0;
+    }
+
+    //Записывает фигуру на доску. Фигура должна помещаться в заданной позиции.
+    public void place(TetrominoDefinition definition, int rotation, int targetX, int targetY) {
+        int[] masks = definition.getRowMasks(rotation);
+        byte color = (byte) (definition.getType() + 1);
+        for (int i = 0; i < masks.length; i++) {
+            int mask = masks[i];
+            if (mask == 0) {
+                continue;
+            }
+            int row = targetY + i;
+            int low = Integer.numberOfTrailingZeros(mask);
+            int column = targetX + low;
+            long bits = (mask >>> low) & 0xFFFFFFFFL;
+            int index = row * words + (column >>> 6);
+            int shift = column & 63;
+            rows[index] |= bits << shift;
+            if (shift != 0 && (bits >>> (64 - shift)) != 0) {
+                rows[index + 1] |= bits >>> (64 - shift);
+            }
+            for (int m = mask; m != 0; m &= m - 1) {
+                int cell = targetX + Integer.numberOfTrailingZeros(m);
+                cells[row * width + cell] = color;
+                columnTops[cell] = Math.min(columnTops[cell], row);
+            }
+            rowFill[row] += Integer.bitCount(mask);
+            stackTop = Math.min(stackTop, row);
+        }
+        stackVersion++;
+    }
+
+    /**
+     * Возвращает маску заполненных строк в диапазоне [fromRow, fromRow + count).
+     * Бит i соответствует строке fromRow + i.
+     */
+    public int completeRows(int fromRow, int count) {
+        int mask = 0;
+        for (int i = 0; i < count && fromRow + i < height; i++) {
+            if (fromRow + i >= 0 && isRowComplete(fromRow + i)) {
+                mask |= 1 << i;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Удаляет строки, отмеченные в маске (бит i - строка fromRow + i),
+     * и сдвигает вниз вышележащие строки до верхней непустой строки.
+     *
+     * @return количество удаленных строк.
+     */
+    public int clearRows(int mask, int fromRow) {
+        if (mask == 0) {
+            return 0;
+        }
+        int count = Integer.bitCount(mask);
+        int bottom = fromRow + 31 - Integer.numberOfLeadingZeros(mask);
+        int write = bottom;
+        for (int read = bottom; read >= stackTop; read--) {
+            int bit = read - fromRow;
+            if (bit >= 0 && (mask & (1 << bit)) != 0) {
+                continue;
+            }
+            if (read != write) {
+                System.arraycopy(rows, read * words, rows, write * words, words);
+                System.arraycopy(cells, read * width, cells, write * width, width);
+                rowFill[write] = rowFill[read];
+            }
+            write--;
+        }
+        // Освободившиеся строки между старой и новой вершиной стопки.
+        Arrays.fill(rows, stackTop * words, (write + 1) * words, 0L);
+        Arrays.fill(cells, stackTop * width, (write + 1) * width, (byte) 0);
+        Arrays.fill(rowFill, stackTop, write + 1, 0);
+        stackTop = Math.min(height, stackTop + count);
+        // Все удаленные строки лежат не выше вершины каждого столбца, поэтому вершина опускается
+        // минимум на count строк. Дальше проверяется только столбец, чья вершина была удалена.
+        for (int column = 0; column < width; column++) {
+            int top = columnTops[column] + count;
+            while (top < height && !isOccupied(column, top)) {
+                top++;
+            }
+            columnTops[column] = Math.min(top, height);
+        }
+        stackVersion++;
+        return count;
+    }
+
+    //Появление новой фигуры посередине (I, O) или слева посередине (J, L, S, T, Z) в верхней строке.
+    public void spawn(TetrominoDefinition definition) {
+        piece = definition;
+        rotation = 0;
+        x = (width - definition.size()) / 2;
+        y = 0;
+    }
+
+    //Ставит текущую фигуру в заданное положение без проверки, например при переборе ходов.
+    public void setPiece(TetrominoDefinition definition, int rotation, int x, int y) {
+        this.piece = definition;
+        this.rotation = rotation;
+        this.x = x;
+        this.y = y;
+    }
+
+    //Возвращает true, если текущая фигура поместится со смещением (dx, dy).
+    public boolean fits(int dx, int dy) {
+        return piece != null && !intersects(piece, rotation, x + dx, y + dy);
+    }
+
+    //Смещает текущую фигуру, если это возможно.
+    public boolean tryMove(int dx, int dy) {
+        if (!fits(dx, dy)) {
+            return false;
+        }
+        x += dx;
+        y += dy;
+        return true;
+    }
+
+    /**
+     * Поворачивает текущую фигуру. Смещения из таблицы фигуры перебираются по порядку,
+     * применяется первое, при котором фигура помещается на доске.
+     *
+     * @param clockwise true, если поворот по часовой стрелке.
+     * @return true, если поворот удался.
+     */
+    public boolean tryRotate(boolean clockwise) {
+        if (piece == null) {
+            return false;
+        }
+        int target = (rotation + (clockwise ? 1 : 3)) & 3;
+        int[] kicks = piece.getKicks(rotation, clockwise);
+        for (int k = 0; k < kicks.length; k += 2) {
+            if (!intersects(piece, target, x + kicks[k], y + kicks[k + 1])) {
+                rotation = target;
+                x += kicks[k];
+                y += kicks[k + 1];
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Вычисляет строку, на которую приземлится фигура, падая из позиции (targetX, targetY).
+     * Строка берется из поверхности стопки. Только если фигура находится под навесом,
+     * выполняется обычный поиск вниз.
+     */
+    public int landingY(TetrominoDefinition definition, int rotation, int targetX, int targetY) {
+        int[] bottoms = definition.getColumnBottoms(rotation);
+        int landing = Integer.MAX_VALUE;
+        for (int j = 0; j < bottoms.length; j++) {
+            if (bottoms[j] >= 0) {
+                landing = Math.min(landing, columnTops[targetX + j] - 1 - bottoms[j]);
+            }
+        }
+        if (landing >= targetY) {
+            return landing;
+        }
+        landing = targetY;
+        while (!intersects(definition, rotation, targetX, landing + 1)) {
+            landing++;
+        }
+        return landing;
+    }
+
+    //Возвращает, на сколько строк текущая фигура может опуститься вниз.
+    public int dropDistance() {
+        return piece == null ? 0 : landingY(piece, rotation, x, y) - y;
+    }
+
+    /**
+     * Фиксирует текущую фигуру на доске.
+     *
+     * @return маска заполненных строк, бит i соответствует строке getY() + i.
+     */
+    public int lock() {
+        place(piece, rotation, x, y);
+        int mask = completeRows(y, piece.size());
+        piece = null;
+        return mask;
+    }
+
+    public boolean hasPiece() {
+        return piece != null;
+    }
+
+    //Возвращает текущую фигуру или null.
+    public TetrominoDefinition getPiece() {
+        return piece;
+    }
+
+    public int getRotation() {
+        return rotation;
+    }
+
+    public int getX() {
+        return x;
+    }
+
+    public int getY() {
+        return y;
+    }
+
+    //Заменяет клетки строки row (width байт). После замены строк вызывается updateSurface().
+    public void setRow(int row, byte[] rowCells) {
+        System.arraycopy(rowCells, 0, cells, row * width, width);
+        Arrays.fill(rows, row * words, (row + 1) * words, 0L);
+        int fill = 0;
+        for (int column = 0; column < width; column++) {
+            if (rowCells[column] != 0) {
+                rows[row * words + (column >>> 6)] |= 1L << column;
+                fill++;
+            }
+        }
+        rowFill[row] = fill;
+    }
+
+    //Пересчитывает вершину стопки и поверхность после setRow().
+    public void updateSurface() {
+        stackTop = 0;
+        while (stackTop < height && rowFill[stackTop] == 0) {
+            stackTop++;
+        }
+        for (int column = 0; column < width; column++) {
+            int top = stackTop;
+            while (top < height && !isOccupied(column, top)) {
+                top++;
+            }
+            columnTops[column] = top;
+        }
+        stackVersion++;
+    }
+
+    //Записывает состояние доски и текущей фигуры. Строки выше вершины стопки пусты и не записываются.
+    public void save(ByteBuffer buffer) {
+        buffer.putShort((short) stackTop);
+        buffer.put(cells, stackTop * width, (height - stackTop) * width);
+        buffer.put((byte) (piece == null ? -1 : piece.getType()));
+        buffer.put((byte) rotation);
+        buffer.putShort((short) x);
+        buffer.putShort((short) y);
+    }
+
+    //Восстанавливает состояние, записанное save() для доски того же размера.
+    //Битовые маски, заполненность строк и поверхность стопки вычисляются заново по клеткам.
+    public void restore(ByteBuffer buffer) {
+        clear();
+        stackTop = buffer.getShort();
+        buffer.get(cells, stackTop * width, (height - stackTop) * width);
+        for (int row = stackTop; row < height; row++) {
+            for (int column = 0; column < width; column++) {
+                if (cells[row * width + column] != 0) {
+                    rows[row * words + (column >>> 6)] |= 1L << column;
+                    rowFill[row]++;
+                    columnTops[column] = Math.min(columnTops[column], row);
+                }
+            }
+        }
+        int type = buffer.get();
+        piece = type < 0 ? null : TetrominoDefinition.get(type);
+        rotation = buffer.get();
+        x = buffer.getShort();
+        y = buffer.getShort();
+    }
+}
@@ -0,0 +1,275 @@
+package tetris;
+import javafx.geometry.HorizontalDirection;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+//Асинхронная доставка событий доски медленным слушателям (сохранение, статистика, сеть).
+//Доска вызывает конвейер как обычного слушателя в потоке JavaFX, а он только записывает событие
+//в кольцевой буфер каждого подписчика. Подписчик забирает события пачками в своем потоке,
+//поэтому медленный слушатель не задерживает управление и анимацию.
+//Обычные слушатели доски (ScoreManager, NotificationOverlay) по-прежнему вызываются синхронно.
+
+final class BoardEventPipeline implements Board.BoardListener {
+    //Что делать, если буфер подписчика заполнен.
+    enum Backpressure {
+        //Поток доски ждет, пока подписчик освободит место.
+        BLOCK,
+        //Самое старое событие выбрасывается.
+        DROP_OLDEST,
+        //Событие складывается с другими событиями того же вида и доставляется одним событием
+        //после того, как подписчик разберет буфер. Порядок событий разных видов при этом не сохраняется.
+        COALESCE
+    }
+
+    //Виды событий. Событие в буфере - это вид в старших 32 битах и аргумент в младших.
+    private static final int DROPPED = 0, ROWS_ELIMINATED = 1, GAME_OVER = 2, INVALID_MOVE = 3, MOVE = 4, ROTATE = 5;
+    private static final int KINDS = 6;
+    private static final HorizontalDirection[] DIRECTIONS = HorizontalDirection.values();
+
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    /**
+     * Подписывает слушателя. Его методы вызываются в отдельном потоке-демоне.
+     *
+     * @param listener     слушатель.
+     * @param capacity     размер буфера, округляется вверх до степени двойки.
+     * @param backpressure поведение при заполненном буфере.
+     */
+    public Subscription subscribe(Board.BoardListener listener, int capacity, Backpressure backpressure) {
+        Subscription subscription = new Subscription(listener, capacity, backpressure);
+        subscriptions.add(subscription);
+        subscription.thread.start();
+        return subscription;
+    }
+
+    private void publish(int kind, int argument) {
+        long event = (long) kind << 32 | (argument & 0xFFFFFFFFL);
+        for (Subscription subscription : subscriptions) {
+            subscription.offer(event);
+        }
+    }
+
+    @Override
+    public void onDropped() {
+        publish(DROPPED, 0);
+    }
+
+    @Override
+    public void onRowsEliminated(int rows) {
+        publish(ROWS_ELIMINATED, rows);
+    }
+
+    @Override
+    public void onGameOver() {
+        publish(GAME_OVER, 0);
+    }
+
+    @Override
+    public void onInvalidMove() {
+        publish(INVALID_MOVE, 0);
+    }
+
+    @Override
+    public void onMove(HorizontalDirection horizontalDirection) {
+        publish(MOVE, horizontalDirection.ordinal());
+    }
+
+    @Override
+    public void onRotate(HorizontalDirection horizontalDirection) {
+        publish(ROTATE, horizontalDirection.ordinal());
+    }
+
+    //Передает событие слушателю.
+    private static void deliver(Board.BoardListener listener, int kind, int argument) {
+        switch (kind) {
+            case DROPPED:
+                listener.onDropped();
+                break;
+            case ROWS_ELIMINATED:
+                listener.onRowsEliminated(argument);
+                break;
+            case GAME_OVER:
+                listener.onGameOver();
+                break;
+            case INVALID_MOVE:
+                listener.onInvalidMove();
+                break;
+            case MOVE:
+                listener.onMove(DIRECTIONS[argument]);
+                break;
+            default:
+                listener.onRotate(DIRECTIONS[argument]);
+        }
+    }
+
+    //Подписка: кольцевой буфер на одного писателя (поток доски) и одного читателя (поток подписчика).
+    final class Subscription implements AutoCloseable {
+        private final Board.BoardListener listener;
+        private final Backpressure backpressure;
+        private final AtomicLongArray ring;
+        private final int mask;
+        //Номер следующего события для чтения. При DROP_OLDEST его сдвигает и писатель,
+        //поэтому читатель забирает события сравнением с обменом.
+        private final AtomicLong head = new AtomicLong();
+        //Номер следующего события для записи.
+        private final AtomicLong tail = new AtomicLong();
+        //Сложенные события при COALESCE: количество по виду и сумма или последний аргумент.
+        private final AtomicIntegerArray coalescedCounts = new AtomicIntegerArray(KINDS);
+        private final AtomicIntegerArray coalescedArguments = new AtomicIntegerArray(KINDS);
+        private final AtomicLong dropped = new AtomicLong();
+        private final AtomicLong coalesced = new AtomicLong();
+        private final Thread thread;
+        //Читатель уснул и его нужно разбудить после записи.
+        private volatile boolean sleeping;
+        private volatile boolean closed;
+
+        private Subscription(Board.BoardListener listener, int capacity, Backpressure backpressure) {
+            this.listener = listener;
+            this.backpressure = backpressure;
+            int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+            ring = new AtomicLongArray(size);
+            mask = size - 1;
+            thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    consume();
+                }
+            }, "board-events-" + listener.getClass().getSimpleName());
+            thread.setDaemon(true);
+        }
+
+        //Записывает событие. Вызывается только потоком доски.
+        private void offer(long event) {
+            if (closed) {
+                return;
+            }
+            long t = tail.get();
+            while (t - head.get() > mask) {
+                if (backpressure == Backpressure.DROP_OLDEST) {
+                    long h = head.get();
+                    if (t - h > mask && head.compareAndSet(h, h + 1)) {
+                        dropped.incrementAndGet();
+                    }
+                } else if (backpressure == Backpressure.COALESCE) {
+                    int kind = (int) (event >>> 32);
+                    if (kind == ROWS_ELIMINATED) {
+                        coalescedArguments.addAndGet(kind, (int) event);
+                    } else {
+                        coalescedArguments.set(kind, (int) event);
+                    }
+                    coalescedCounts.incrementAndGet(kind);
+                    coalesced.incrementAndGet();
+                    wake();
+                    return;
+                } else {
+                    if (closed) {
+                        return;
+                    }
+                    wake();
+                    LockSupport.parkNanos(50_000L);
+                }
+            }
+            ring.lazySet((int) t & mask, event);
+            tail.lazySet(t + 1);
+            wake();
+        }
+
+        private void wake() {
+            if (sleeping) {
+                LockSupport.unpark(thread);
+            }
+        }
+
+        //Цикл потока подписчика: забирает все накопившиеся события и передает их слушателю.
+        private void consume() {
+            long[] batch = new long[mask + 1];
+            while (true) {
+                int count = take(batch);
+                for (int i = 0; i < count; i++) {
+                    deliverSafely((int) (batch[i] >>> 32), (int) batch[i]);
+                }
+                if (count == 0 && !flushCoalesced()) {
+                    if (closed) {
+                        return;
+                    }
+                    sleeping = true;
+                    if (tail.get() == head.get() && !closed) {
+                        // Время ожидания ограничено на случай пропущенного пробуждения.
+                        LockSupport.parkNanos(this, 10_000_000L);
+                    }
+                    sleeping = false;
+                }
+            }
+        }
+
+        //Забирает пачку событий из буфера. Возвращает их количество.
+        private int take(long[] batch) {
+            while (true) {
+                long h = head.get();
+                int count = (int) Math.min(tail.get() - h, batch.length);
+                if (count <= 0) {
+                    return 0;
+                }
+                for (int i = 0; i < count; i++) {
+                    batch[i] = ring.get((int) (h + i) & mask);
+                }
+                // Если писатель тем временем выбросил старые события, пачка читается заново.
+                if (head.compareAndSet(h, h + count)) {
+                    return count;
+                }
+            }
+        }
+
+        //Передает сложенные события, по одному на вид. Возвращает true, если они были.
+        private boolean flushCoalesced() {
+            boolean any = false;
+            for (int kind = 0; kind < KINDS; kind++) {
+                if (coalescedCounts.getAndSet(kind, 0) != 0) {
+                    int argument = kind == ROWS_ELIMINATED ? coalescedArguments.getAndSet(kind, 0) : coalescedArguments.get(kind);
+                    if (kind != ROWS_ELIMINATED || argument != 0) {
+                        deliverSafely(kind, argument);
+                    }
+                    any = true;
+                }
+            }
+            return any;
+        }
+
+        //Ошибка слушателя не останавливает поток подписчика.
+        private void deliverSafely(int kind, int argument) {
+            try {
+                deliver(listener, kind, argument);
+            } catch (RuntimeException e) {
+                thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+            }
+        }
+
+        //Количество событий, выброшенных при DROP_OLDEST.
+        public long getDropped() {
+            return dropped.get();
+        }
+
+        //Количество событий, сложенных с другими при COALESCE.
+        public long getCoalesced() {
+            return coalesced.get();
+        }
+
+        //Количество событий, ожидающих доставки.
+        public int getPending() {
+            return (int) (tail.get() - head.get());
+        }
+
+        //Отписывает слушателя. Уже записанные события доставляются, после чего поток завершается.
+        @Override
+        public void close() {
+            subscriptions.remove(this);
+            closed = true;
+            LockSupport.unpark(thread);
+        }
+    }
+}
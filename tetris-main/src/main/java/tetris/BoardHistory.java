@@ -0,0 +1,170 @@
+package tetris;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+//История игры по появлениям фигур, к любому состоянию которой можно вернуться.
+//Стопка хранится как массив ссылок на строки, а строки (клетки по столбцам) никогда не меняются.
+//При фиксации фигуры заново создаются только строки, в которые она легла. Удаление строк лишь сдвигает
+//ссылки, а сверху добавляется общая пустая строка. Поэтому соседние состояния делят все
+//неизменившиеся строки, и состояние стоит массив ссылок плюс несколько строк.
+//Строки, которые отличаются между двумя состояниями, находятся сравнением ссылок.
+
+final class BoardHistory {
+    //Состояние в момент появления фигуры.
+    static final class Version {
+        private final byte[][] rows;
+        private final TetrominoDefinition piece;
+        //Ожидающие фигуры и состояние генератора (PieceQueue.save()).
+        private final byte[] queue;
+        private final long tick;
+        private final int score;
+        private final int spawned;
+
+        private Version(byte[][] rows, TetrominoDefinition piece, byte[] queue, long tick, int score, int spawned) {
+            this.rows = rows;
+            this.piece = piece;
+            this.queue = queue;
+            this.tick = tick;
+            this.score = score;
+            this.spawned = spawned;
+        }
+
+        //Строка row стопки. Массив нельзя изменять: он общий для нескольких состояний.
+        byte[] getRow(int row) {
+            return rows[row];
+        }
+
+        public TetrominoDefinition getPiece() {
+            return piece;
+        }
+
+        public long getTick() {
+            return tick;
+        }
+
+        public int getScore() {
+            return score;
+        }
+
+        public int getSpawned() {
+            return spawned;
+        }
+    }
+
+    private final int width;
+    private final byte[] emptyRow;
+    //Стопка после последней фиксации. Массив заменяется, а не изменяется, поэтому его можно хранить в состояниях.
+    private byte[][] current;
+    private Version[] versions = new Version[64];
+    private int size;
+    private ByteBuffer queue;
+
+    BoardHistory(int width, int height) {
+        this.width = width;
+        this.emptyRow = new byte[width];
+        this.current = new byte[height][];
+        clear();
+    }
+
+    //Удаляет все состояния, стопка становится пустой.
+    public void clear() {
+        byte[][] empty = new byte[current.length][];
+        Arrays.fill(empty, emptyRow);
+        current = empty;
+        Arrays.fill(versions, 0, size, null);
+        size = 0;
+    }
+
+    //Удаляет все состояния и берет стопку из ядра, например после восстановления игры из снимка.
+    public void reset(BoardEngine engine) {
+        clear();
+        byte[][] next = current.clone();
+        for (int row = engine.getStackTop(); row < next.length; row++) {
+            next[row] = copyRow(engine, row);
+        }
+        current = next;
+    }
+
+    /**
+     * Фигура зафиксирована. Вызывается до удаления строк в ядре.
+     *
+     * @param fromRow      верхняя строка фигуры.
+     * @param count        количество строк фигуры.
+     * @param completeRows маска заполненных строк, бит i соответствует строке fromRow + i.
+     */
+    public void lock(BoardEngine engine, int fromRow, int count, int completeRows) {
+        byte[][] next = current.clone();
+        for (int row = Math.max(0, fromRow); row < Math.min(next.length, fromRow + count); row++) {
+            next[row] = copyRow(engine, row);
+        }
+        if (completeRows != 0) {
+            // Строки над удаленными сдвигаются вниз вместе со своими клетками.
+            int bottom = fromRow + 31 - Integer.numberOfLeadingZeros(completeRows);
+            int write = bottom;
+            for (int read = bottom; read >= 0; read--) {
+                int bit = read - fromRow;
+                if (bit < 0 || (completeRows & (1 << bit)) == 0) {
+                    next[write--] = next[read];
+                }
+            }
+            while (write >= 0) {
+                next[write--] = emptyRow;
+            }
+        }
+        current = next;
+    }
+
+    private byte[] copyRow(BoardEngine engine, int row) {
+        if (engine.isRowEmpty(row)) {
+            return emptyRow;
+        }
+        byte[] cells = new byte[width];
+        for (int column = 0; column < width; column++) {
+            cells[column] = (byte) engine.getCell(column, row);
+        }
+        return cells;
+    }
+
+    //Запоминает состояние после появления фигуры piece.
+    public Version push(PieceQueue pieceQueue, TetrominoDefinition piece, long tick, int score, int spawned) {
+        if (queue == null || queue.capacity() < pieceQueue.size() + 32) {
+            queue = ByteBuffer.allocate(pieceQueue.size() + 32);
+        }
+        queue.clear();
+        pieceQueue.save(queue);
+        Version version = new Version(current, piece, Arrays.copyOf(queue.array(), queue.position()), tick, score, spawned);
+        if (size == versions.length) {
+            versions = Arrays.copyOf(versions, size * 2);
+        }
+        versions[size++] = version;
+        return version;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Version get(int index) {
+        return versions[index];
+    }
+
+    //Строка row стопки после последней фиксации.
+    byte[] getRow(int row) {
+        return current[row];
+    }
+
+    /**
+     * Возвращается к состоянию index: более поздние состояния удаляются.
+     *
+     * @param pieceQueue очередь, в которую восстанавливаются ожидающие фигуры.
+     */
+    public Version rewind(int index, PieceQueue pieceQueue) {
+        Version version = versions[index];
+        Arrays.fill(versions, index + 1, size, null);
+        size = index + 1;
+        current = version.rows;
+        pieceQueue.restore(ByteBuffer.wrap(version.queue));
+        return version;
+    }
+}
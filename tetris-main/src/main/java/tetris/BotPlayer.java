@@ -0,0 +1,121 @@
+package tetris;
+
+import javafx.application.Platform;
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableBooleanValue;
+import javafx.beans.value.ObservableValue;
+import javafx.geometry.HorizontalDirection;
+
+import java.util.concurrent.ForkJoinPool;
+
+//Бот, который играет на доске вместо игрока.
+//При появлении фигуры ядро и очередь копируются, а ход ищется в пуле бота, не занимая поток JavaFX.
+//Найденный ход выполняется в потоке JavaFX теми же вызовами rotate(), move() и dropDown(), что и у игрока,
+//поэтому он анимируется, записывается и попадает в историю как обычный ввод.
+
+final class BotPlayer {
+    private final Board board;
+    private final PlacementBot bot;
+    private final ObservableBooleanValue paused;
+    private final ChangeListener<Number> spawnListener;
+    private final ChangeListener<Boolean> pauseListener;
+    //Номер фигуры, для которой ищется ход. Ходы, найденные для прежних фигур, отбрасываются.
+    private int searching = -1;
+    //Найденный ход, который ждет конца паузы.
+    private PlacementBot.Placement pending;
+
+    /**
+     * @param paused пауза игры: на паузе найденный ход откладывается.
+     */
+    BotPlayer(Board board, PlacementBot bot, ObservableBooleanValue paused) {
+        this.board = board;
+        this.bot = bot;
+        this.paused = paused;
+        spawnListener = new ChangeListener<Number>() {
+            @Override
+            public void changed(ObservableValue<? extends Number> observable, Number oldValue, Number newValue) {
+                plan();
+            }
+        };
+        pauseListener = new ChangeListener<Boolean>() {
+            @Override
+            public void changed(ObservableValue<? extends Boolean> observable, Boolean oldValue, Boolean newValue) {
+                if (!newValue) {
+                    apply();
+                }
+            }
+        };
+    }
+
+    //Начинает игру бота. Если фигура уже падает, ход ищется сразу.
+    public void start() {
+        board.spawnedProperty().addListener(spawnListener);
+        paused.addListener(pauseListener);
+        plan();
+    }
+
+    public void stop() {
+        board.spawnedProperty().removeListener(spawnListener);
+        paused.removeListener(pauseListener);
+        searching = -1;
+        pending = null;
+    }
+
+    //Запускает поиск хода для текущей фигуры.
+    private void plan() {
+        pending = null;
+        searching = -1;
+        final BoardEngine engine = board.getEngine();
+        PieceQueue pieceQueue = board.getPieceQueue();
+        if (!engine.hasPiece() || pieceQueue == null || board.isReplaying()) {
+            return;
+        }
+        final int spawn = board.spawnedProperty().get();
+        final BoardEngine copy = new BoardEngine(engine.getWidth(), engine.getHeight());
+        copy.copyFrom(engine);
+        final TetrominoDefinition[] next = new TetrominoDefinition[pieceQueue.size()];
+        for (int i = 0; i < next.length; i++) {
+            next[i] = pieceQueue.peek(i);
+        }
+        searching = spawn;
+        ForkJoinPool pool = bot.getPool() != null ? bot.getPool() : ForkJoinPool.commonPool();
+        pool.execute(new Runnable() {
+            @Override
+            public void run() {
+                final PlacementBot.Placement placement = bot.choose(copy, next);
+                Platform.runLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (searching == spawn && board.spawnedProperty().get() == spawn) {
+                            searching = -1;
+                            pending = placement;
+                            apply();
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    //Выполняет найденный ход, если игра не на паузе.
+    private void apply() {
+        if (pending == null || paused.get() || !board.getEngine().hasPiece()) {
+            return;
+        }
+        BoardEngine engine = board.getEngine();
+        int turns = (pending.getRotation() - engine.getRotation()) & 3;
+        HorizontalDirection direction = turns == 3 ? HorizontalDirection.LEFT : HorizontalDirection.RIGHT;
+        for (int i = turns == 3 ? 1 : turns; i > 0; i--) {
+            if (!board.rotate(direction)) {
+                break;
+            }
+        }
+        while (engine.getX() != pending.getX()) {
+            if (!board.move(engine.getX() < pending.getX() ? HorizontalDirection.RIGHT : HorizontalDirection.LEFT)) {
+                break;
+            }
+        }
+        pending = null;
+        board.dropDown();
+    }
+}
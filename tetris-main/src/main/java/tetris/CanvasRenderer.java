@@ -0,0 +1,143 @@
+package tetris;
+import javafx.beans.property.ReadOnlyDoubleProperty;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+
+import java.util.Arrays;
+
+//Отрисовка доски на одном холсте вместо отдельного прямоугольника на каждую клетку.
+//Кадр собирается из клеток ядра, тени и текущей фигуры, только когда изменилась стопка или фигура,
+//и перерисовываются только строки, которые изменились с прошлого кадра.
+
+final class CanvasRenderer {
+    //Код клетки тени в кадре: GHOST + номер фигуры.
+    private static final byte GHOST = 8;
+    //Прозрачность тени.
+    private static final double GHOST_OPACITY = 0.25;
+    private final BoardEngine engine;
+    //Количество скрытых строк над доской, они не рисуются.
+    private final int hiddenRows;
+    private final ReadOnlyDoubleProperty squareSize;
+    private final BlockSprites sprites = BlockSprites.shared();
+    private final Canvas canvas = new Canvas();
+    //Собираемый кадр: 0 - пусто, 1..7 - фигура, GHOST + 0..6 - тень.
+    private final byte[] frame;
+    //Кадр, который сейчас нарисован на холсте.
+    private final byte[] drawn;
+    //Холст нужно перерисовать полностью.
+    private boolean invalid = true;
+    //Версия стопки, фигура и её положение, по которым собран кадр.
+    //Пока они не меняются, кадр не собирается заново.
+    private int frameStackVersion;
+    private TetrominoDefinition framePiece;
+    private int frameX, frameY, frameRotation;
+    //Строка тени и фигура, x, поворот и версия стопки, для которых она вычислена.
+    //Как и у узлов доски, тень пересчитывается только при изменении одного из них.
+    private TetrominoDefinition ghostPiece;
+    private int ghostX, ghostRotation, ghostStackVersion;
+    private int ghostY;
+
+    CanvasRenderer(BoardEngine engine, int hiddenRows, ReadOnlyDoubleProperty squareSize) {
+        this.engine = engine;
+        this.hiddenRows = hiddenRows;
+        this.squareSize = squareSize;
+        frame = new byte[engine.getWidth() * engine.getHeight()];
+        drawn = new byte[frame.length];
+        canvas.setMouseTransparent(true);
+    }
+
+    public Canvas getCanvas() {
+        return canvas;
+    }
+
+    //Перерисовывает строки, которые отличаются от нарисованного кадра.
+    public void render() {
+        double size = squareSize.get();
+        if (!(size > 0)) {
+            return;
+        }
+        int width = engine.getWidth();
+        int height = engine.getHeight();
+        if (canvas.getWidth() != width * size || canvas.getHeight() != (height - hiddenRows) * size) {
+            canvas.setWidth(width * size);
+            canvas.setHeight((height - hiddenRows) * size);
+            invalid = true;
+        }
+
+        TetrominoDefinition piece = engine.getPiece();
+        int rotation = engine.getRotation();
+        int stackVersion = engine.getStackVersion();
+        if (!invalid && stackVersion == frameStackVersion && piece == framePiece && engine.getX() == frameX
+                && engine.getY() == frameY && rotation == frameRotation) {
+            return;
+        }
+        frameStackVersion = stackVersion;
+        framePiece = piece;
+        frameX = engine.getX();
+        frameY = engine.getY();
+        frameRotation = rotation;
+
+        engine.copyCells(frame);
+        if (piece != null) {
+            if (ghostPiece != piece || ghostX != frameX || ghostRotation != rotation || ghostStackVersion != stackVersion) {
+                ghostPiece = piece;
+                ghostX = frameX;
+                ghostRotation = rotation;
+                ghostStackVersion = stackVersion;
+                ghostY = engine.landingY(piece, rotation, frameX, frameY);
+            }
+            overlay(piece, rotation, ghostY, (byte) (GHOST + piece.getType()));
+            overlay(piece, rotation, frameY, (byte) (piece.getType() + 1));
+        }
+
+        GraphicsContext graphics = canvas.getGraphicsContext2D();
+        for (int row = hiddenRows; row < height; row++) {
+            int from = row * width;
+            int to = from + width;
+            if (invalid || !Arrays.equals(frame, from, to, drawn, from, to)) {
+                drawRow(graphics, row, size);
+                System.arraycopy(frame, from, drawn, from, width);
+            }
+        }
+        invalid = false;
+    }
+
+    //Накладывает клетки фигуры на кадр. Тень не закрывает занятые клетки.
+    private void overlay(TetrominoDefinition piece, int rotation, int y, byte code) {
+        int[][] matrix = piece.getMatrix(rotation);
+        int width = engine.getWidth();
+        int x = engine.getX();
+        for (int i = 0; i < matrix.length; i++) {
+            int row = y + i;
+            if (row < 0 || row >= engine.getHeight()) {
+                continue;
+            }
+            for (int j = 0; j < matrix[i].length; j++) {
+                int index = row * width + x + j;
+                if (matrix[i][j] == 1 && (code < GHOST || frame[index] == 0)) {
+                    frame[index] = code;
+                }
+            }
+        }
+    }
+
+    //Стирает строку и рисует её клетки из готовых изображений.
+    private void drawRow(GraphicsContext graphics, int row, double size) {
+        int width = engine.getWidth();
+        double top = (row - hiddenRows) * size;
+        graphics.clearRect(0, top, width * size, size);
+        for (int column = 0; column < width; column++) {
+            int code = frame[row * width + column];
+            if (code == 0) {
+                continue;
+            }
+            if (code >= GHOST) {
+                graphics.setGlobalAlpha(GHOST_OPACITY);
+                graphics.drawImage(sprites.get(code - GHOST, 0, size), column * size, top, size, size);
+                graphics.setGlobalAlpha(1);
+            } else {
+                graphics.drawImage(sprites.get(code - 1, 0, size), column * size, top, size, size);
+            }
+        }
+    }
+}
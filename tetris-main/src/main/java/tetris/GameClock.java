@@ -0,0 +1,301 @@
+package tetris;
+import javafx.animation.AnimationTimer;
+import javafx.animation.Interpolator;
+import javafx.scene.Node;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+
+//Общие часы для всех анимаций доски.
+//Анимации - это простые переходы одного свойства узла, которые вычисляются в импульсе часов.
+//На паузе таймер останавливается, поэтому время часов идет только без паузы.
+//Завершенные анимации возвращаются в пул и используются снова, слушатели на них не вешаются.
+
+final class GameClock extends AnimationTimer {
+    //Анимируемое свойство узла.
+    enum Property {
+        TRANSLATE_X, TRANSLATE_Y, ROTATE, OPACITY
+    }
+
+    //Выполняющиеся анимации.
+    private final ArrayList<Tween> live = new ArrayList<>();
+    //Завершенные анимации для повторного использования.
+    private final ArrayDeque<Tween> pool = new ArrayDeque<>();
+    //Завершения анимаций импульса. Вызываются после обхода live, потому что могут добавлять и отменять анимации.
+    private final ArrayList<Runnable> finished = new ArrayList<>();
+    //Время часов в наносекундах, не включает паузы.
+    private long time;
+    //Время предыдущего импульса, -1 - часы только что запущены.
+    private long lastPulse = -1;
+    private boolean paused;
+    //Есть анимации, таймер запущен или ждет конца паузы.
+    private boolean running;
+
+    @Override
+    public void handle(long now) {
+        if (lastPulse < 0) {
+            lastPulse = now;
+        }
+        time += now - lastPulse;
+        lastPulse = now;
+        int i = 0;
+        while (i < live.size()) {
+            Tween tween = live.get(i);
+            if (tween.update(time)) {
+                // Последняя анимация переносится на место завершенной, порядок не важен.
+                Tween last = live.remove(live.size() - 1);
+                if (last != tween) {
+                    live.set(i, last);
+                }
+                if (tween.onFinished != null) {
+                    finished.add(tween.onFinished);
+                }
+                recycle(tween);
+            } else {
+                i++;
+            }
+        }
+        for (int k = 0; k < finished.size(); k++) {
+            finished.get(k).run();
+        }
+        finished.clear();
+        if (live.isEmpty()) {
+            stop();
+        }
+    }
+
+    @Override
+    public void start() {
+        if (!running) {
+            running = true;
+            lastPulse = -1;
+            if (!paused) {
+                super.start();
+            }
+        }
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        super.stop();
+    }
+
+    //Анимирует свойство от текущего значения до to.
+    public void animate(Node node, Property property, double to, double seconds, Interpolator interpolator) {
+        animate(node, property, get(node, property), to, seconds, interpolator);
+    }
+
+    //Анимирует свойство от from до to. Анимация того же свойства узла, если она идет, прекращается.
+    public void animate(Node node, Property property, double from, double to, double seconds, Interpolator interpolator) {
+        cancel(node, property);
+        Tween tween = obtain();
+        tween.node = node;
+        tween.property = property;
+        tween.from = from;
+        tween.to = to;
+        tween.duration = toNanos(seconds);
+        tween.interpolator = interpolator;
+        add(tween);
+    }
+
+    /**
+     * Добавляет анимацию.
+     *
+     * @param delay       задержка перед началом в секундах.
+     * @param cycles      количество проходов от from до to.
+     * @param autoReverse четные проходы идут обратно от to до from.
+     * @param onFinished  вызывается после последнего прохода, может быть null.
+     */
+    public void animate(Node node, Property property, double from, double to, double seconds, Interpolator interpolator,
+                        double delay, int cycles, boolean autoReverse, Runnable onFinished) {
+        Tween tween = obtain();
+        tween.node = node;
+        tween.property = property;
+        tween.from = from;
+        tween.to = to;
+        tween.duration = toNanos(seconds);
+        tween.interpolator = interpolator;
+        tween.start = time + toNanos(delay);
+        tween.cycles = cycles;
+        tween.autoReverse = autoReverse;
+        tween.onFinished = onFinished;
+        add(tween);
+    }
+
+    //Вызывает action через delay секунд времени часов.
+    public void schedule(double delay, Runnable action) {
+        Tween tween = obtain();
+        tween.start = time + toNanos(delay);
+        tween.onFinished = action;
+        add(tween);
+    }
+
+    //Прекращает анимацию свойства узла. Узел остается в текущем положении.
+    public void cancel(Node node, Property property) {
+        for (int i = live.size() - 1; i >= 0; i--) {
+            Tween tween = live.get(i);
+            if (tween.node == node && tween.property == property) {
+                live.set(i, live.get(live.size() - 1));
+                live.remove(live.size() - 1);
+                recycle(tween);
+            }
+        }
+    }
+
+    //Прекращает все анимации без вызова их завершения.
+    public void clear() {
+        for (Tween tween : live) {
+            recycle(tween);
+        }
+        live.clear();
+        stop();
+    }
+
+    //Сразу завершает все анимации: свойства получают конечные значения, а завершения вызываются.
+    public void complete() {
+        while (!live.isEmpty()) {
+            Tween tween = live.remove(live.size() - 1);
+            tween.finish();
+            Runnable onFinished = tween.onFinished;
+            recycle(tween);
+            if (onFinished != null) {
+                onFinished.run();
+            }
+        }
+        stop();
+    }
+
+    //Приостанавливает все анимации.
+    public void pause() {
+        if (!paused) {
+            paused = true;
+            super.stop();
+        }
+    }
+
+    //Продолжает анимации после паузы. Время паузы в часы не входит.
+    public void play() {
+        if (paused) {
+            paused = false;
+            if (running) {
+                lastPulse = -1;
+                super.start();
+            }
+        }
+    }
+
+    public boolean isPaused() {
+        return paused;
+    }
+
+    //Количество выполняющихся анимаций.
+    public int getAnimationCount() {
+        return live.size();
+    }
+
+    private void add(Tween tween) {
+        if (tween.start < 0) {
+            tween.start = time;
+        }
+        live.add(tween);
+        start();
+    }
+
+    private Tween obtain() {
+        Tween tween = pool.poll();
+        return tween != null ? tween : new Tween();
+    }
+
+    private void recycle(Tween tween) {
+        tween.reset();
+        pool.push(tween);
+    }
+
+    private static long toNanos(double seconds) {
+        return (long) (seconds * 1_000_000_000L);
+    }
+
+    private static double get(Node node, Property property) {
+        switch (property) {
+            case TRANSLATE_X:
+                return node.getTranslateX();
+            case TRANSLATE_Y:
+                return node.getTranslateY();
+            case ROTATE:
+                return node.getRotate();
+            default:
+                return node.getOpacity();
+        }
+    }
+
+    private static void set(Node node, Property property, double value) {
+        switch (property) {
+            case TRANSLATE_X:
+                node.setTranslateX(value);
+                break;
+            case TRANSLATE_Y:
+                node.setTranslateY(value);
+                break;
+            case ROTATE:
+                node.setRotate(value);
+                break;
+            default:
+                node.setOpacity(value);
+        }
+    }
+
+    //Переход одного свойства узла. Без узла служит таймером.
+    private static final class Tween {
+        Node node;
+        Property property;
+        double from, to;
+        Interpolator interpolator;
+        //Время начала и длительность одного прохода в наносекундах.
+        long start = -1, duration;
+        int cycles = 1;
+        boolean autoReverse;
+        Runnable onFinished;
+
+        //Устанавливает значение для момента time. Возвращает true, если анимация завершена.
+        boolean update(long time) {
+            long elapsed = time - start;
+            if (elapsed < 0) {
+                return false;
+            }
+            if (node == null) {
+                return true;
+            }
+            long total = duration * cycles;
+            if (duration <= 0 || elapsed >= total) {
+                finish();
+                return true;
+            }
+            long cycle = elapsed / duration;
+            double fraction = (double) (elapsed - cycle * duration) / duration;
+            if (autoReverse && cycle % 2 == 1) {
+                fraction = 1 - fraction;
+            }
+            set(node, property, interpolator.interpolate(from, to, fraction));
+            return false;
+        }
+
+        //Устанавливает значение в конце последнего прохода.
+        void finish() {
+            if (node != null) {
+                boolean reversed = autoReverse && cycles % 2 == 0;
+                set(node, property, reversed ? from : to);
+            }
+        }
+
+        void reset() {
+            node = null;
+            property = null;
+            interpolator = null;
+            onFinished = null;
+            start = -1;
+            cycles = 1;
+            autoReverse = false;
+        }
+    }
+}
@@ -17,11 +17,13 @@ final class GameController{
     private final NotificationOverlay notificationOverlay;//Наложение уведомлений
    // private Tetris tetris;//Наложение уведомлений
     private final ScoreManager scoreManager;//Подсчет балов
+    private BotPlayer botPlayer;//Бот, который играет вместо игрока, null - играет игрок
     private final BooleanProperty paused = new SimpleBooleanProperty();
     public GameController() {
         this.board = new Board();
         this.scoreManager = new ScoreManager(this);
         notificationOverlay = new NotificationOverlay(this);
+        board.setSnapshot(GameSnapshot.shared(), scoreManager.scoreProperty());
         paused.addListener(new ChangeListener<Boolean>() {
             @Override
             public void changed(ObservableValue<? extends Boolean> observableValue, Boolean aBoolean, Boolean aBoolean2) {
@@ -33,11 +35,60 @@ final class GameController{
         return paused;
     }
 
+    //Запускает новую игру со случайным начальным значением генератора фигур.
     public void start() {
-        board.start();
+        start(System.nanoTime());
+    }
+
+    //Запускает новую игру с заданным начальным значением генератора фигур.
+    public void start(long seed) {
+        board.start(seed);
         scoreManager.scoreProperty().set(0);
         paused.set(false);
     }
+    /**
+     * Продолжает сохраненную игру на паузе.
+     *
+     * @return false, если снимка нет или он сделан для доски другого размера.
+     */
+    public boolean resume() {
+        if (!board.resume()) {
+            return false;
+        }
+        scoreManager.scoreProperty().set(GameSnapshot.shared().getScore());
+        if (paused.get()) {
+            board.pause();
+        } else {
+            paused.set(true);
+        }
+        return true;
+    }
+
+    //Возвращает игру на steps фигур назад вместе со счетом.
+    public void rewind(int steps) {
+        BoardHistory.Version version = board.rewind(steps);
+        if (version != null) {
+            scoreManager.scoreProperty().set(version.getScore());
+        }
+    }
+
+    //Воспроизводит записанную игру. Счет набирается заново, как в записанной игре.
+    public void replay(ReplayPlayer player, double speed) {
+        board.replay(player, speed);
+        scoreManager.scoreProperty().set(0);
+        paused.set(false);
+    }
+    //Передает управление фигурами боту, null - возвращает его игроку.
+    public void autoplay(PlacementBot bot) {
+        if (botPlayer != null) {
+            botPlayer.stop();
+            botPlayer = null;
+        }
+        if (bot != null) {
+            botPlayer = new BotPlayer(board, bot, paused);
+            botPlayer.start();
+        }
+    }
     public Board getBoard() {
         return board;
     }
@@ -45,10 +96,18 @@ final class GameController{
         board.BLOCKS_PER_ROW=str;
         board.BLOCKS_PER_COLUMN=blc;
     }
+    //Задает размер поля, количество видимых заранее фигур и способ их выбора.
+    public void apply(byte str, byte blc, byte previews, PieceGenerator.Mode mode) {
+        apply(str, blc);
+        Board.PREVIEWS = previews;
+        Board.GENERATOR_MODE = mode;
+    }
     private void pause() {
         board.pause();
     }
     public void stop() {
+        // Остановленную игру можно продолжить из снимка.
+        board.saveSnapshot();
         board.clear();
         scoreManager.scoreProperty().set(0);
         paused.set(false);
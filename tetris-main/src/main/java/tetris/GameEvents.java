@@ -0,0 +1,216 @@
+package tetris;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+//События игры для Java Flight Recorder: по ним в записи видно, что происходило в игре
+//во время сборки мусора или долгого импульса. События включаются и выключаются обычными
+//настройками JFR (например, tetris.LineClear#enabled=false); выключенное событие почти ничего не стоит.
+
+final class GameEvents {
+    private GameEvents() {
+    }
+
+    static void spawn(TetrominoDefinition piece, int x, int y, int spawned) {
+        Spawn event = new Spawn();
+        if (event.isEnabled()) {
+            event.piece = piece.getType();
+            event.x = x;
+            event.y = y;
+            event.spawned = spawned;
+            event.commit();
+        }
+    }
+
+    static void lock(TetrominoDefinition piece, int rotation, int x, int y, int completeRows) {
+        Lock event = new Lock();
+        if (event.isEnabled()) {
+            event.piece = piece.getType();
+            event.rotation = rotation;
+            event.x = x;
+            event.y = y;
+            event.rowsCleared = Integer.bitCount(completeRows);
+            event.commit();
+        }
+    }
+
+    //Начинает событие удаления строк. Возвращает null, если событие выключено.
+    static LineClear beginLineClear(int rows, int fromRow, int stackTop) {
+        LineClear event = new LineClear();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.rows = rows;
+        event.fromRow = fromRow;
+        event.stackTop = stackTop;
+        event.begin();
+        return event;
+    }
+
+    //Завершает событие удаления строк после анимации.
+    static void endLineClear(LineClear event, int rowsFallen, int animations) {
+        if (event != null) {
+            event.end();
+            event.rowsFallen = rowsFallen;
+            event.animations = animations;
+            event.commit();
+        }
+    }
+
+    static void rotate(boolean clockwise, boolean success, int rotation, int x, int y, int animations) {
+        Rotate event = new Rotate();
+        if (event.isEnabled()) {
+            event.clockwise = clockwise;
+            event.success = success;
+            event.rotation = rotation;
+            event.x = x;
+            event.y = y;
+            event.animations = animations;
+            event.commit();
+        }
+    }
+
+    static void move(int dx, boolean success, int x, int y, int animations) {
+        Move event = new Move();
+        if (event.isEnabled()) {
+            event.dx = dx;
+            event.success = success;
+            event.x = x;
+            event.y = y;
+            event.animations = animations;
+            event.commit();
+        }
+    }
+
+    static void drop(int distance, int x, int y) {
+        Drop event = new Drop();
+        if (event.isEnabled()) {
+            event.distance = distance;
+            event.x = x;
+            event.y = y;
+            event.commit();
+        }
+    }
+
+    static void gameOver(int spawned, int stackTop) {
+        GameOver event = new GameOver();
+        if (event.isEnabled()) {
+            event.spawned = spawned;
+            event.stackTop = stackTop;
+            event.commit();
+        }
+    }
+
+    @Name("tetris.Spawn")
+    @Label("Piece Spawn")
+    @Category("Tetris")
+    @StackTrace(false)
+    static final class Spawn extends Event {
+        @Label("Piece")
+        int piece;
+        @Label("X")
+        int x;
+        @Label("Y")
+        int y;
+        @Label("Pieces Spawned")
+        int spawned;
+    }
+
+    @Name("tetris.Lock")
+    @Label("Piece Lock")
+    @Category("Tetris")
+    @StackTrace(false)
+    static final class Lock extends Event {
+        @Label("Piece")
+        int piece;
+        @Label("Rotation")
+        int rotation;
+        @Label("X")
+        int x;
+        @Label("Y")
+        int y;
+        @Label("Rows Cleared")
+        int rowsCleared;
+    }
+
+    @Name("tetris.LineClear")
+    @Label("Line Clear")
+    @Description("Row delete and fall animation of the node board, from lock until the rows above have fallen")
+    @Category("Tetris")
+    @StackTrace(false)
+    static final class LineClear extends Event {
+        @Label("Rows")
+        int rows;
+        @Label("From Row")
+        int fromRow;
+        @Label("Stack Top")
+        int stackTop;
+        @Label("Rows Fallen")
+        int rowsFallen;
+        @Label("Running Animations")
+        int animations;
+    }
+
+    @Name("tetris.Rotate")
+    @Label("Rotate")
+    @Category("Tetris")
+    @StackTrace(false)
+    static final class Rotate extends Event {
+        @Label("Clockwise")
+        boolean clockwise;
+        @Label("Success")
+        boolean success;
+        @Label("Rotation")
+        int rotation;
+        @Label("X")
+        int x;
+        @Label("Y")
+        int y;
+        @Label("Running Animations")
+        int animations;
+    }
+
+    @Name("tetris.Move")
+    @Label("Move")
+    @Category("Tetris")
+    @StackTrace(false)
+    static final class Move extends Event {
+        @Label("Direction")
+        int dx;
+        @Label("Success")
+        boolean success;
+        @Label("X")
+        int x;
+        @Label("Y")
+        int y;
+        @Label("Running Animations")
+        int animations;
+    }
+
+    @Name("tetris.Drop")
+    @Label("Hard Drop")
+    @Category("Tetris")
+    @StackTrace(false)
+    static final class Drop extends Event {
+        @Label("Distance")
+        int distance;
+        @Label("X")
+        int x;
+        @Label("Y")
+        int y;
+    }
+
+    @Name("tetris.GameOver")
+    @Label("Game Over")
+    @Category("Tetris")
+    @StackTrace(false)
+    static final class GameOver extends Event {
+        @Label("Pieces Spawned")
+        int spawned;
+        @Label("Stack Top")
+        int stackTop;
+    }
+}
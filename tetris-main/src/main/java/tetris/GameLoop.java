@@ -0,0 +1,73 @@
+package tetris;
+import javafx.animation.AnimationTimer;
+
+//Игровой цикл с фиксированным шагом.
+//Время между импульсами JavaFX накапливается, и игра продвигается целым числом тактов Simulation.
+//Если импульс задержался, пропущенные такты выполняются в следующем кадре, поэтому такты не теряются.
+
+final class GameLoop extends AnimationTimer {
+    //Максимальное накопленное время: после очень долгой остановки (например, отладчик) такты не догоняются.
+    private static final long MAX_LAG_NANOS = 5_000_000_000L;
+    private final Simulation simulation;
+    //Вызывается в каждом кадре после тактов, например для отрисовки. Может быть null.
+    private final Runnable onFrame;
+    private final GameMetrics metrics = GameMetrics.get();
+    //Вызывается перед каждым тактом, например чтобы передать записанный ввод. Может быть null.
+    private Runnable beforeTick;
+    //Сколько тактов выполняется за время одного такта: больше 1 - ускоренное воспроизведение записи.
+    private double speed = 1;
+    //Время предыдущего кадра, -1 - цикл только что запущен.
+    private long lastFrame = -1;
+    //Накопленное, но еще не выполненное время.
+    private long accumulator;
+
+    GameLoop(Simulation simulation) {
+        this(simulation, null);
+    }
+
+    GameLoop(Simulation simulation, Runnable onFrame) {
+        this.simulation = simulation;
+        this.onFrame = onFrame;
+    }
+
+    @Override
+    public void handle(long now) {
+        long start = System.nanoTime();
+        boolean first = lastFrame < 0;
+        if (first) {
+            lastFrame = now;
+        }
+        long interval = now - lastFrame;
+        accumulator = Math.min(accumulator + (speed == 1 ? interval : (long) (interval * speed)), MAX_LAG_NANOS);
+        lastFrame = now;
+        while (accumulator >= Simulation.TICK_NANOS) {
+            if (beforeTick != null) {
+                beforeTick.run();
+            }
+            simulation.tick();
+            accumulator -= Simulation.TICK_NANOS;
+        }
+        if (onFrame != null) {
+            onFrame.run();
+        }
+        if (!first) {
+            long end = System.nanoTime();
+            metrics.frame(interval, end - start, end);
+        }
+    }
+
+    public void setBeforeTick(Runnable beforeTick) {
+        this.beforeTick = beforeTick;
+    }
+
+    public void setSpeed(double speed) {
+        this.speed = speed;
+    }
+
+    //Запускает цикл. Время, прошедшее во время паузы, не учитывается.
+    @Override
+    public void start() {
+        lastFrame = -1;
+        super.start();
+    }
+}
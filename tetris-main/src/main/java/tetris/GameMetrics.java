@@ -0,0 +1,196 @@
+package tetris;
+import javafx.scene.Node;
+import javafx.scene.Parent;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+//Показатели работы игры. Записываются в потоке JavaFX, читаются через JMX из любого потока.
+//Один общий экземпляр регистрируется в MBean-сервере при первом обращении.
+
+final class GameMetrics implements GameMetricsMBean {
+    private static final String NAME = "tetris:type=GameMetrics";
+    private static GameMetrics instance;
+
+    private final LatencyHistogram frameTime = new LatencyHistogram();
+    private final LatencyHistogram updateTime = new LatencyHistogram();
+    private final LatencyHistogram inputLatency = new LatencyHistogram();
+    private final LatencyHistogram spawnToLock = new LatencyHistogram();
+    private final LatencyHistogram lineClear = new LatencyHistogram();
+    private final LongAdder inputs = new LongAdder();
+    private final LongAdder linesCleared = new LongAdder();
+    //Время первого еще не показанного нажатия, 0 - нажатий нет.
+    private long pendingInput;
+    //Время появления текущей фигуры.
+    private long spawnTime;
+    private volatile int nodeCount;
+    private volatile int animationCount;
+
+    private GameMetrics() {
+    }
+
+    //Возвращает общий экземпляр и регистрирует его в JMX.
+    static synchronized GameMetrics get() {
+        if (instance == null) {
+            instance = new GameMetrics();
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(
+                        new StandardMBean(instance, GameMetricsMBean.class), new ObjectName(NAME));
+            } catch (JMException e) {
+                // Без JMX показатели просто не видны снаружи, игра продолжается.
+            }
+        }
+        return instance;
+    }
+
+    //Кадр игрового цикла: interval - время с прошлого кадра, update - время работы цикла в этом кадре.
+    void frame(long interval, long update, long now) {
+        frameTime.record(interval);
+        updateTime.record(update);
+        if (pendingInput != 0) {
+            inputLatency.record(now - pendingInput);
+            pendingInput = 0;
+        }
+    }
+
+    //Нажата клавиша управления. Задержка отсчитывается до следующего кадра.
+    void input(long now) {
+        inputs.increment();
+        if (pendingInput == 0) {
+            pendingInput = now;
+        }
+    }
+
+    void spawned(long now) {
+        spawnTime = now;
+    }
+
+    void locked(long now) {
+        if (spawnTime != 0) {
+            spawnToLock.record(now - spawnTime);
+            spawnTime = 0;
+        }
+    }
+
+    void linesCleared(int rows, long duration) {
+        linesCleared.add(rows);
+        lineClear.record(duration);
+    }
+
+    //Строки удалены без анимации (отрисовка холстом): длительность удаления не записывается.
+    void linesCleared(int rows) {
+        linesCleared.add(rows);
+    }
+
+    //Запоминает состояние сцены доски. Узлы считаются обходом дерева, поэтому вызывается не в каждом кадре.
+    void sample(Parent board, int animations) {
+        nodeCount = count(board);
+        animationCount = animations;
+    }
+
+    private static int count(Parent parent) {
+        int count = 1;
+        for (Node child : parent.getChildrenUnmodifiable()) {
+            count += child instanceof Parent ? count((Parent) child) : 1;
+        }
+        return count;
+    }
+
+    private static long micros(long nanos) {
+        return nanos / 1000;
+    }
+
+    @Override
+    public long getFrames() {
+        return frameTime.getCount();
+    }
+
+    @Override
+    public long getFrameTimeP50() {
+        return micros(frameTime.getPercentile(0.5));
+    }
+
+    @Override
+    public long getFrameTimeP99() {
+        return micros(frameTime.getPercentile(0.99));
+    }
+
+    @Override
+    public long getFrameTimeMax() {
+        return micros(frameTime.getMax());
+    }
+
+    @Override
+    public long getUpdateTimeP99() {
+        return micros(updateTime.getPercentile(0.99));
+    }
+
+    @Override
+    public long getInputs() {
+        return inputs.sum();
+    }
+
+    @Override
+    public long getInputLatencyP50() {
+        return micros(inputLatency.getPercentile(0.5));
+    }
+
+    @Override
+    public long getInputLatencyP99() {
+        return micros(inputLatency.getPercentile(0.99));
+    }
+
+    @Override
+    public long getInputLatencyMax() {
+        return micros(inputLatency.getMax());
+    }
+
+    @Override
+    public long getSpawnToLockP50() {
+        return micros(spawnToLock.getPercentile(0.5));
+    }
+
+    @Override
+    public long getSpawnToLockP99() {
+        return micros(spawnToLock.getPercentile(0.99));
+    }
+
+    @Override
+    public long getLineClearP50() {
+        return micros(lineClear.getPercentile(0.5));
+    }
+
+    @Override
+    public long getLineClearP99() {
+        return micros(lineClear.getPercentile(0.99));
+    }
+
+    @Override
+    public long getLinesCleared() {
+        return linesCleared.sum();
+    }
+
+    @Override
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    @Override
+    public int getAnimationCount() {
+        return animationCount;
+    }
+
+    @Override
+    public void reset() {
+        frameTime.reset();
+        updateTime.reset();
+        inputLatency.reset();
+        spawnToLock.reset();
+        lineClear.reset();
+        inputs.reset();
+        linesCleared.reset();
+    }
+}
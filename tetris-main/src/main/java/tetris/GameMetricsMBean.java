@@ -0,0 +1,50 @@
+package tetris;
+
+//Показатели работы игры, доступные через JMX (tetris:type=GameMetrics).
+//Длительности - в микросекундах.
+public interface GameMetricsMBean {
+    //Количество кадров игрового цикла.
+    long getFrames();
+
+    //Время между кадрами.
+    long getFrameTimeP50();
+
+    long getFrameTimeP99();
+
+    long getFrameTimeMax();
+
+    //Время работы игрового цикла в кадре (такты и отрисовка холста).
+    long getUpdateTimeP99();
+
+    //Количество нажатий клавиш управления.
+    long getInputs();
+
+    //Время от нажатия клавиши до кадра, в котором изменение показано.
+    long getInputLatencyP50();
+
+    long getInputLatencyP99();
+
+    long getInputLatencyMax();
+
+    //Время от появления фигуры до её фиксации.
+    long getSpawnToLockP50();
+
+    long getSpawnToLockP99();
+
+    //Длительность анимации удаления строк.
+    long getLineClearP50();
+
+    long getLineClearP99();
+
+    //Количество удаленных строк.
+    long getLinesCleared();
+
+    //Количество узлов сцены в доске.
+    int getNodeCount();
+
+    //Количество выполняющихся анимаций доски.
+    int getAnimationCount();
+
+    //Обнуляет все показатели.
+    void reset();
+}
@@ -0,0 +1,274 @@
+package tetris;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.CRC32;
+
+//Снимок игры в файле, отображенном в память.
+//Файл имеет постоянную разметку: заголовок с версией, размером доски, количеством видимых фигур
+//и режимом генератора, затем два слота одинакового размера. Каждый слот - номер записи, длина,
+//контрольная сумма, счет, количество фигур и состояние Simulation.save().
+//Снимки пишутся в слоты по очереди, поэтому при сбое во время записи целым остается предыдущий.
+//При чтении выбирается целый слот с большим номером, а состояние восстанавливается прямо из отображения.
+//Запись в отображение почти ничего не стоит. Сброс страниц на диск выполняет отдельный поток.
+
+final class GameSnapshot {
+    static final int MAGIC = 0x54545356; // "TTSV"
+    //Версия разметки. Файл другой версии не читается и при следующей записи размечается заново.
+    static final short VERSION = 1;
+    static final int HEADER_SIZE = 32;
+    static final int SLOT_HEADER_SIZE = 24;
+    //Через сколько тактов игры снимок пишется снова (5 с).
+    static final int SAVE_TICKS = 5 * Simulation.TICKS_PER_SECOND;
+    //Файл снимка (-Dtetris.snapshot=<файл> или --snapshot=<файл>).
+    static Path PATH = Paths.get(System.getProperty("tetris.snapshot",
+            Paths.get(System.getProperty("user.home"), ".tetris", "snapshot.bin").toString()));
+
+    //Снимок в файле PATH, общий для всех досок.
+    private static GameSnapshot shared;
+    private static boolean opened;
+
+    private final FileChannel channel;
+    private volatile MappedByteBuffer buffer;
+    //Разметка файла.
+    private int width, height, previews, slotSize;
+    private PieceGenerator.Mode mode;
+    //Номер последней записи, 0 - целых снимков нет.
+    private long sequence;
+    private final CRC32 crc = new CRC32();
+    private final Thread sync;
+    private volatile boolean dirty;
+
+    private GameSnapshot(FileChannel channel) throws IOException {
+        this.channel = channel;
+        if (channel.size() >= HEADER_SIZE) {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            readHeader();
+        }
+        sync = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                sync();
+            }
+        }, "snapshot-sync");
+        sync.setDaemon(true);
+        sync.start();
+    }
+
+    //Возвращает снимок в файле PATH. null, если файл не удалось открыть: игра идет без снимков.
+    static synchronized GameSnapshot shared() {
+        if (!opened) {
+            opened = true;
+            try {
+                shared = open(PATH);
+            } catch (IOException e) {
+                System.err.println("Snapshots are disabled: " + e.getMessage());
+                shared = null;
+            }
+        }
+        return shared;
+    }
+
+    //Открывает файл снимка или создает пустой.
+    static GameSnapshot open(Path path) throws IOException {
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        return new GameSnapshot(FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE));
+    }
+
+    //Читает разметку. Файл другой версии пропускается, а испорченная разметка своей версии - ошибка.
+    private void readHeader() throws IOException {
+        sequence = 0;
+        if (buffer.getInt(0) != MAGIC || buffer.getShort(4) != VERSION || buffer.getShort(6) != HEADER_SIZE) {
+            return;
+        }
+        int slotSize = buffer.getInt(8);
+        int width = buffer.getShort(12);
+        int height = buffer.getShort(14);
+        int previews = buffer.get(16);
+        int modeIndex = buffer.get(17);
+        // Размеры доски такие же, как принимает InfoBox, слоты должны помещаться в файле.
+        if (width < 1 || width > Byte.MAX_VALUE || height <= Board.HIDDEN_ROWS
+                || height > Byte.MAX_VALUE + Board.HIDDEN_ROWS || previews < 0
+                || modeIndex < 0 || modeIndex >= PieceGenerator.Mode.values().length
+                || slotSize != SLOT_HEADER_SIZE + Simulation.stateSize(width, height, previews)
+                || buffer.capacity() < HEADER_SIZE + 2L * slotSize) {
+            throw new IOException("Invalid snapshot: width " + width + ", height " + height + ", previews " + previews
+                    + ", mode " + modeIndex + ", slot size " + slotSize + ", file size " + buffer.capacity());
+        }
+        this.slotSize = slotSize;
+        this.width = width;
+        this.height = height;
+        this.previews = previews;
+        mode = PieceGenerator.Mode.values()[modeIndex];
+        for (int slot = 0; slot < 2; slot++) {
+            long slotSequence = buffer.getLong(slotOffset(slot));
+            if (slotSequence > sequence && isValid(slot)) {
+                sequence = slotSequence;
+            }
+        }
+    }
+
+    private int slotOffset(int slot) {
+        return HEADER_SIZE + slot * slotSize;
+    }
+
+    //Проверяет контрольную сумму слота.
+    private boolean isValid(int slot) {
+        int offset = slotOffset(slot);
+        int length = buffer.getInt(offset + 8);
+        if (length <= 0 || length > slotSize - SLOT_HEADER_SIZE) {
+            return false;
+        }
+        return buffer.getInt(offset + 12) == checksum(offset, length);
+    }
+
+    //Контрольная сумма номера, счета, количества фигур и состояния.
+    private int checksum(int offset, int length) {
+        ByteBuffer view = buffer.duplicate();
+        crc.reset();
+        view.limit(offset + 8).position(offset);
+        crc.update(view);
+        view.limit(offset + SLOT_HEADER_SIZE + length).position(offset + 16);
+        crc.update(view);
+        return (int) crc.getValue();
+    }
+
+    //Размечает файл для доски simulation. Прежнее содержимое теряется.
+    private void layout(Simulation simulation, PieceGenerator.Mode mode) throws IOException {
+        BoardEngine engine = simulation.getEngine();
+        width = engine.getWidth();
+        height = engine.getHeight();
+        previews = simulation.getPieceQueue().size();
+        this.mode = mode;
+        slotSize = SLOT_HEADER_SIZE + simulation.getStateSize();
+        sequence = 0;
+        long size = HEADER_SIZE + 2L * slotSize;
+        // Прежнее отображение нельзя освободить явно, а пока оно живо, в Windows файл нельзя укоротить.
+        // Поэтому файл не укорачивается: отображается весь, хвост за слотами не используется.
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(size, channel.size()));
+        for (int i = 0; i < size; i++) {
+            buffer.put(i, (byte) 0);
+        }
+        buffer.putInt(0, MAGIC);
+        buffer.putShort(4, VERSION);
+        buffer.putShort(6, (short) HEADER_SIZE);
+        buffer.putInt(8, slotSize);
+        buffer.putShort(12, (short) width);
+        buffer.putShort(14, (short) height);
+        buffer.put(16, (byte) previews);
+        buffer.put(17, (byte) mode.ordinal());
+    }
+
+    /**
+     * Записывает снимок в свободный слот. Вызывается в потоке игры.
+     *
+     * @param mode    режим генератора фигур игры.
+     * @param score   счет.
+     * @param spawned количество появившихся фигур.
+     */
+    public void save(Simulation simulation, PieceGenerator.Mode mode, int score, int spawned) throws IOException {
+        BoardEngine engine = simulation.getEngine();
+        if (buffer == null || engine.getWidth() != width || engine.getHeight() != height
+                || simulation.getPieceQueue().size() != previews || mode != this.mode
+                || SLOT_HEADER_SIZE + simulation.getStateSize() != slotSize) {
+            layout(simulation, mode);
+        }
+        long next = sequence + 1;
+        int offset = slotOffset((int) (next & 1));
+        ByteBuffer state = buffer.duplicate();
+        state.limit(offset + slotSize).position(offset + SLOT_HEADER_SIZE);
+        simulation.save(state);
+        int length = state.position() - offset - SLOT_HEADER_SIZE;
+        buffer.putLong(offset, next);
+        buffer.putInt(offset + 8, length);
+        buffer.putInt(offset + 16, score);
+        buffer.putInt(offset + 20, spawned);
+        buffer.putInt(offset + 12, checksum(offset, length));
+        sequence = next;
+        dirty = true;
+        LockSupport.unpark(sync);
+    }
+
+    //Делает снимки недействительными, например после окончания игры.
+    public void discard() {
+        if (buffer == null || sequence == 0) {
+            return;
+        }
+        for (int slot = 0; slot < 2; slot++) {
+            buffer.putInt(slotOffset(slot) + 8, 0);
+        }
+        sequence = 0;
+        dirty = true;
+        LockSupport.unpark(sync);
+    }
+
+    //Есть ли целый снимок.
+    public boolean hasGame() {
+        return sequence != 0;
+    }
+
+    private int lastOffset() {
+        return slotOffset((int) (sequence & 1));
+    }
+
+    /**
+     * Восстанавливает игру из последнего снимка. Состояние читается прямо из отображения.
+     *
+     * @param simulation игра с доской размером getWidth() x getHeight().
+     * @param pieceQueue очередь из getPreviews() фигур с генератором в режиме getMode().
+     */
+    public void restore(Simulation simulation, PieceQueue pieceQueue) {
+        int offset = lastOffset();
+        ByteBuffer state = buffer.duplicate();
+        state.limit(offset + SLOT_HEADER_SIZE + buffer.getInt(offset + 8)).position(offset + SLOT_HEADER_SIZE);
+        simulation.resume(pieceQueue, state);
+    }
+
+    public int getScore() {
+        return buffer.getInt(lastOffset() + 16);
+    }
+
+    public int getSpawned() {
+        return buffer.getInt(lastOffset() + 20);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getPreviews() {
+        return previews;
+    }
+
+    public PieceGenerator.Mode getMode() {
+        return mode;
+    }
+
+    //Цикл потока, который сбрасывает записанные страницы на диск.
+    private void sync() {
+        while (true) {
+            LockSupport.park(this);
+            if (dirty) {
+                dirty = false;
+                MappedByteBuffer mapped = buffer;
+                if (mapped != null) {
+                    mapped.force();
+                }
+            }
+        }
+    }
+}
@@ -24,6 +24,28 @@ import static java.lang.Integer.parseInt;
 
 //пользовательское окно
 final class InfoBox extends VBox {
+    //Допустимые размеры поля: самая длинная фигура занимает 4 клетки, размеры хранятся в byte.
+    private static final int MIN_SIZE = 4;
+    private static final int MAX_SIZE = Byte.MAX_VALUE;
+    //Наибольшее количество следующих фигур: Preview рисует каждую в своей ячейке, больше не помещается в окне.
+    private static final int MAX_PREVIEWS = 6;
+
+    //Число из поля field от min до max. Если поле пусто или число вне диапазона, показывает ошибку и возвращает -1.
+    private static int parseField(TextField field, String name, int min, int max) {
+        int value;
+        try {
+            value = parseInt(field.getText());
+        } catch (NumberFormatException e) {
+            value = -1;
+        }
+        if (value < min || value > max) {
+            new Alert(Alert.AlertType.ERROR, name + ": введите число от " + min + " до " + max + ".").showAndWait();
+            field.requestFocus();
+            return -1;
+        }
+        return value;
+    }
+
     // Защита клавиатуры от лишних символов
     public void digits(TextField field){
         field.setTextFormatter(new TextFormatter<Integer>(change -> {
@@ -58,12 +80,20 @@ final class InfoBox extends VBox {
         stopImageView .setFitHeight(40);
         stopImageView.setFitWidth(40);
         Button btnStop = new Button("Stop", stopImageView);
+        Button btnResume = new Button("Resume");
         Label lb1=new Label("Ширина игрового поля");
         Label lb2=new Label("Высота игрового поля");
+        Label lb3=new Label("Количество следующих фигур");
+        Label lb4=new Label("Выбор фигур");
         TextField str =new TextField();
         TextField blc =new TextField();
+        TextField prv =new TextField(String.valueOf(Board.PREVIEWS));
+        ChoiceBox<PieceGenerator.Mode> gen = new ChoiceBox<>();
+        gen.getItems().addAll(PieceGenerator.Mode.values());
+        gen.setValue(Board.GENERATOR_MODE);
         digits(str);
         digits(blc);
+        digits(prv);
         btnStart.setOnAction(new EventHandler<ActionEvent>() {
             @Override
             public void handle(ActionEvent actionEvent) {
@@ -73,7 +103,19 @@ final class InfoBox extends VBox {
         btnApply.setOnAction(new EventHandler<ActionEvent>() {
             @Override
             public void handle(ActionEvent actionEvent) {
-                gameController.apply((byte)parseInt(str.getText()),(byte)parseInt(blc.getText()));
+                int width = parseField(str, lb1.getText(), MIN_SIZE, MAX_SIZE);
+                if (width < 0) {
+                    return;
+                }
+                int height = parseField(blc, lb2.getText(), MIN_SIZE, MAX_SIZE);
+                if (height < 0) {
+                    return;
+                }
+                int previews = prv.getText().isEmpty() ? 1 : parseField(prv, lb3.getText(), 0, MAX_PREVIEWS);
+                if (previews < 0) {
+                    return;
+                }
+                gameController.apply((byte) width, (byte) height, (byte) previews, gen.getValue());
                 btnApply.getScene().getWindow().hide();
                 Stage stage1=new Stage();
                 stage1.setTitle("T E T R I S ");
@@ -89,9 +131,34 @@ final class InfoBox extends VBox {
                 gameController.stop();
             }
         });
+        //Продолжение сохраненной игры
+        btnResume.setOnAction(new EventHandler<ActionEvent>() {
+            @Override
+            public void handle(ActionEvent actionEvent) {
+                if (gameController.resume()) {
+                    return;
+                }
+                GameSnapshot snapshot = GameSnapshot.shared();
+                if (snapshot == null || !snapshot.hasGame()) {
+                    return;
+                }
+                // Снимок сделан для доски другого размера: игра продолжается в новом окне, как после Apply.
+                gameController.apply((byte) snapshot.getWidth(), (byte) (snapshot.getHeight() - Board.HIDDEN_ROWS),
+                        (byte) snapshot.getPreviews(), snapshot.getMode());
+                btnResume.getScene().getWindow().hide();
+                Stage stage1=new Stage();
+                stage1.setTitle("T E T R I S ");
+                Tetris tetris = new Tetris();
+                stage1.setScene(new Scene(tetris));
+                stage1.show();
+                tetris.resume();
+            }
+        });
 
         btnStop.setMaxWidth(Double.MAX_VALUE);
         btnStop.setAlignment(Pos.CENTER_LEFT);
+        btnResume.setMaxWidth(Double.MAX_VALUE);
+        btnResume.setAlignment(Pos.CENTER_LEFT);
         btnStart.setMaxWidth(Double.MAX_VALUE);
         btnStart.setAlignment(Pos.CENTER_LEFT);
         str.setMaxWidth(Double.MAX_VALUE);
@@ -100,6 +167,9 @@ final class InfoBox extends VBox {
         str.setAlignment(Pos.CENTER_LEFT);
         blc.setMaxWidth(Double.MAX_VALUE);
         blc.setAlignment(Pos.CENTER_LEFT);
+        prv.setMaxWidth(Double.MAX_VALUE);
+        prv.setAlignment(Pos.CENTER_LEFT);
+        gen.setMaxWidth(Double.MAX_VALUE);
         lb1.setMaxWidth(Double.MAX_VALUE);
         lb1.setAlignment(Pos.CENTER_LEFT);
         lb2.setMaxWidth(Double.MAX_VALUE);
@@ -154,10 +224,15 @@ final class InfoBox extends VBox {
         getChildren().add(btnStart);
         getChildren().add(btnPause);
         getChildren().add(btnStop);
+        getChildren().add(btnResume);
         getChildren().add(lb1);
         getChildren().add(str);
         getChildren().add(lb2);
         getChildren().add(blc);
+        getChildren().add(lb3);
+        getChildren().add(prv);
+        getChildren().add(lb4);
+        getChildren().add(gen);
         getChildren().add(btnApply);
         Label lblInfo = new Label("Используйте клавиши со стрелками \n"+ " для перемещения и поворота\n" +
                 "и пробел для\n" +
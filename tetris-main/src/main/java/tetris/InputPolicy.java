@@ -0,0 +1,71 @@
+package tetris;
+
+import java.util.Random;
+
+//Управление фигурой без игрока и без JavaFX: стратегия получает каждую появившуюся фигуру
+//и передает Simulation повороты, сдвиги и сброс.
+
+interface InputPolicy {
+    //Управляет фигурой, которая только что появилась в simulation.
+    void place(Simulation simulation);
+
+    /**
+     * Поворачивает текущую фигуру в состояние rotation, сдвигает к столбцу x и сбрасывает.
+     * Если поворот или сдвиг упирается в стопку, фигура сбрасывается там, куда дошла.
+     */
+    static void moveTo(Simulation simulation, int rotation, int x) {
+        BoardEngine engine = simulation.getEngine();
+        int turns = (rotation - engine.getRotation()) & 3;
+        // Три поворота по часовой стрелке - это один против.
+        boolean clockwise = turns != 3;
+        for (int i = clockwise ? turns : 1; i > 0; i--) {
+            if (!simulation.rotate(clockwise)) {
+                break;
+            }
+        }
+        while (engine.getX() != x) {
+            if (!simulation.move(engine.getX() < x ? 1 : -1)) {
+                break;
+            }
+        }
+        simulation.hardDrop();
+    }
+
+    //Случайный поворот и столбец для каждой фигуры.
+    static InputPolicy random(long seed) {
+        final Random random = new Random(seed);
+        return new InputPolicy() {
+            @Override
+            public void place(Simulation simulation) {
+                BoardEngine engine = simulation.getEngine();
+                moveTo(simulation, random.nextInt(4), random.nextInt(engine.getWidth()) - 1);
+            }
+        };
+    }
+
+    //Фигура ставится туда, где она опустится ниже всего (при равенстве - левее).
+    static InputPolicy lowest() {
+        return new InputPolicy() {
+            @Override
+            public void place(Simulation simulation) {
+                BoardEngine engine = simulation.getEngine();
+                TetrominoDefinition piece = engine.getPiece();
+                int bestRotation = 0, bestX = engine.getX(), bestY = -1;
+                for (int rotation = 0; rotation < 4; rotation++) {
+                    for (int x = -2; x < engine.getWidth(); x++) {
+                        if (engine.intersects(piece, rotation, x, engine.getY())) {
+                            continue;
+                        }
+                        int y = engine.landingY(piece, rotation, x, engine.getY());
+                        if (y > bestY) {
+                            bestY = y;
+                            bestRotation = rotation;
+                            bestX = x;
+                        }
+                    }
+                }
+                moveTo(simulation, bestRotation, bestX);
+            }
+        };
+    }
+}
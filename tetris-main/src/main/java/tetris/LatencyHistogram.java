@@ -0,0 +1,115 @@
+package tetris;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+//Гистограмма длительностей в наносекундах с логарифмическими корзинами (как HdrHistogram).
+//Значения меньше SUB записываются точно, большие - с относительной точностью 1/SUB.
+//Запись - одно атомарное увеличение без выделения памяти, поэтому гистограмму можно не выключать.
+
+final class LatencyHistogram {
+    private static final int SUB_BITS = 5;
+    private static final int SUB = 1 << SUB_BITS;
+    private final AtomicLongArray counts = new AtomicLongArray((64 - SUB_BITS) * SUB);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    //Записывает значение. Отрицательные значения считаются нулем.
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        counts.incrementAndGet(index(value));
+        count.increment();
+        sum.add(value);
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public long getMean() {
+        long n = count.sum();
+        return n == 0 ? 0 : sum.sum() / n;
+    }
+
+    /**
+     * Возвращает значение, не превышаемое долей quantile записанных значений (с точностью корзины).
+     *
+     * @param quantile доля от 0 до 1, например 0.99.
+     */
+    public long getPercentile(double quantile) {
+        long total = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            total += counts.get(i);
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                // Верхняя граница корзины, но не больше наибольшего значения.
+                return Math.min(lowest(i + 1) - 1, max.get());
+            }
+        }
+        return max.get();
+    }
+
+    //Добавляет значения other, например гистограммы отдельных потоков после замера.
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < counts.length(); i++) {
+            long n = other.counts.get(i);
+            if (n != 0) {
+                counts.addAndGet(i, n);
+            }
+        }
+        count.add(other.count.sum());
+        sum.add(other.sum.sum());
+        long value = other.max.get();
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    public void reset() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+        count.reset();
+        sum.reset();
+        max.set(0);
+    }
+
+    private static int index(long value) {
+        if (value < SUB) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int mantissa = (int) (value >>> (exponent - SUB_BITS));
+        return (exponent - SUB_BITS + 1) * SUB + mantissa - SUB;
+    }
+
+    //Наименьшее значение корзины index.
+    private static long lowest(int index) {
+        if (index < 2 * SUB) {
+            return index;
+        }
+        int exponent = index / SUB + SUB_BITS - 1;
+        long mantissa = SUB + index % SUB;
+        return exponent - SUB_BITS >= 64 - SUB_BITS - 1 ? Long.MAX_VALUE : mantissa << (exponent - SUB_BITS);
+    }
+}
@@ -5,6 +5,11 @@ import javafx.scene.control.Button;
 import javafx.scene.layout.VBox;
 import javafx.stage.Popup;
 import javafx.stage.Stage;
+
+import java.nio.file.Paths;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
 public final class Main extends Application {
     @Override
     public void start(Stage stage) throws Exception {
@@ -27,13 +32,65 @@ public final class Main extends Application {
 
         VBox root = new VBox();
         root.getChildren().addAll(popupButton);*/
+        // Способ отрисовки доски: --renderer=canvas или --renderer=nodes.
+        String renderer = getParameters().getNamed().get("renderer");
+        if (renderer != null) {
+            Board.CANVAS_RENDERER = "canvas".equalsIgnoreCase(renderer);
+        }
+        // Запись каждой игры в каталог: --record=<каталог>.
+        String record = getParameters().getNamed().get("record");
+        if (record != null) {
+            Board.RECORD_DIRECTORY = Paths.get(record);
+        }
+        // Файл снимка игры: --snapshot=<файл>.
+        String snapshotPath = getParameters().getNamed().get("snapshot");
+        if (snapshotPath != null) {
+            GameSnapshot.PATH = Paths.get(snapshotPath);
+        }
+        // Воспроизведение записи: --replay=<файл> и, необязательно, --speed=<N>.
+        String replay = getParameters().getNamed().get("replay");
+        ReplayPlayer player = null;
+        if (replay != null) {
+            player = ReplayPlayer.open(Paths.get(replay));
+            // Доска создается сразу по размеру записанной игры.
+            Board.BLOCKS_PER_ROW = (byte) player.getWidth();
+            Board.BLOCKS_PER_COLUMN = (byte) (player.getHeight() - Board.HIDDEN_ROWS);
+            Board.PREVIEWS = (byte) player.getPreviews();
+            Board.GENERATOR_MODE = player.getMode();
+        }
+        // Игра, прерванная закрытием окна или сбоем, продолжается на доске своего размера.
+        GameSnapshot snapshot = GameSnapshot.shared();
+        boolean resume = player == null && snapshot != null && snapshot.hasGame();
+        if (resume) {
+            Board.BLOCKS_PER_ROW = (byte) snapshot.getWidth();
+            Board.BLOCKS_PER_COLUMN = (byte) (snapshot.getHeight() - Board.HIDDEN_ROWS);
+            Board.PREVIEWS = (byte) snapshot.getPreviews();
+            Board.GENERATOR_MODE = snapshot.getMode();
+        }
         stage.setTitle("T E T R I S ");
-        Scene scene = new Scene(new Tetris());
+        Tetris tetris = new Tetris();
+        Scene scene = new Scene(tetris);
         stage.setScene(scene);
         stage.show();
+        // Игра бота: --bot=<сколько следующих фигур учитывать> и, необязательно, --bot-budget=<мс на фигуру>
+        // и --bot-weights=<веса через запятую>.
+        String bot = getParameters().getNamed().get("bot");
+        if (bot != null && player == null) {
+            String budget = getParameters().getNamed().get("bot-budget");
+            String weights = getParameters().getNamed().get("bot-weights");
+            tetris.autoplay(new PlacementBot(weights == null ? PlacementBot.DEFAULT_WEIGHTS : PlacementBot.parseWeights(weights),
+                    Integer.parseInt(bot),
+                    TimeUnit.MILLISECONDS.toNanos(budget == null ? 50 : Long.parseLong(budget)), ForkJoinPool.commonPool()));
+        }
+        if (player != null) {
+            String speed = getParameters().getNamed().get("speed");
+            tetris.replay(player, speed == null ? 1 : Double.parseDouble(speed));
+        } else if (resume) {
+            tetris.resume();
+        }
     }
 
     public static final class Launcher { public static void main(String[] args) {
-            launch();
+            launch(Main.class, args);
         }}
 }
\ No newline at end of file
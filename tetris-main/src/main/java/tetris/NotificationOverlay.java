@@ -9,12 +9,26 @@ import javafx.event.EventHandler;
 import javafx.geometry.HorizontalDirection;
 import javafx.scene.control.Label;
 import javafx.scene.layout.StackPane;
-import javafx.scene.paint.Color;
 import javafx.util.Duration;
 //всплывающие уведомления
+//Надписи создаются один раз и используются по кругу, их вид задан классами в styles.css.
 final class NotificationOverlay extends StackPane implements Board.BoardListener {
+    //Количество надписей с очками, которые могут быть видны одновременно.
+    private static final int POINTS_LABELS = 3;
+    //Очки, полученные в течение этого времени после появления надписи, добавляются к ней.
+    private static final long COALESCE_NANOS = 500_000_000L;
+    private final Popup[] points = new Popup[POINTS_LABELS];
+    private final Popup gameOver;
+    //Надпись, которая показывала очки последней, и сколько очков в ней.
+    private int current = -1;
+    private int currentPoints;
+    private long currentStart;
 
    public NotificationOverlay(GameController gameController) {
+        for (int i = 0; i < points.length; i++) {
+            points[i] = new Popup("points", Duration.seconds(3), -100);
+        }
+        gameOver = new Popup("game-over", Duration.seconds(6), -50);
         gameController.getBoard().addBoardListener(this);//добавляет в список уведомлений
         gameController.getScoreManager().scoreProperty().addListener(new ChangeListener<Number>() {
             @Override
@@ -22,56 +36,23 @@ final class NotificationOverlay extends StackPane implements Board.BoardListener
                 if (number2.doubleValue() != 0) {
                     showPoints(number2.intValue() - number.intValue());}}});}
 
+    //Показывает полученные очки. Очки, полученные подряд, объединяются в одну надпись "+N".
     private void showPoints(int points) {
-        final Label label = new Label("+" + String.valueOf(points));
-        label.setTextFill(Color.RED);
-        label.setStyle("-fx-font-weight:bold;-fx-font-size:2em");
-        label.setOpacity(0);
-        getChildren().add(label);
-        TranslateTransition translateTransition = new TranslateTransition(Duration.seconds(3), label);
-        translateTransition.setByY(-100);
-        translateTransition.setOnFinished(new EventHandler<ActionEvent>() {
-            @Override
-            public void handle(ActionEvent actionEvent) {
-                getChildren().remove(label);
-            }
-        });
-        translateTransition.setInterpolator(Interpolator.EASE_OUT);
-        FadeTransition fadeTransition = new FadeTransition();
-        fadeTransition.setNode(label);
-        fadeTransition.setFromValue(0);
-        fadeTransition.setToValue(1);
-        fadeTransition.setAutoReverse(true);
-        fadeTransition.setCycleCount(2);
-        fadeTransition.setDuration(translateTransition.getDuration().divide(fadeTransition.getCycleCount()));
-        translateTransition.playFromStart();
-        fadeTransition.playFromStart();
+        long now = System.nanoTime();
+        if (current >= 0 && this.points[current].isShowing() && now - currentStart < COALESCE_NANOS) {
+            currentPoints += points;
+            this.points[current].label.setText("+" + currentPoints);
+            return;
+        }
+        // Следующая надпись по кругу; если она еще видна, она начинается заново.
+        current = (current + 1) % this.points.length;
+        currentPoints = points;
+        currentStart = now;
+        this.points[current].show("+" + points);
     }
 
     private void showGameOver() {
-        final Label label = new Label("Game Over");
-        label.setTextFill(Color.WHITE);
-        label.setStyle("-fx-font-weight:bold;-fx-font-size:4em");
-        label.setOpacity(0);
-        getChildren().add(label);
-        TranslateTransition translateTransition = new TranslateTransition(Duration.seconds(6), label);
-        translateTransition.setByY(-50);
-        translateTransition.setOnFinished(new EventHandler<ActionEvent>() {
-            @Override
-            public void handle(ActionEvent actionEvent) {
-                getChildren().remove(label);
-            }
-        });
-        translateTransition.setInterpolator(Interpolator.EASE_OUT);
-        FadeTransition fadeTransition = new FadeTransition();
-        fadeTransition.setNode(label);
-        fadeTransition.setFromValue(0);
-        fadeTransition.setToValue(1);
-        fadeTransition.setAutoReverse(true);
-        fadeTransition.setCycleCount(2);
-        fadeTransition.setDuration(translateTransition.getDuration().divide(fadeTransition.getCycleCount()));
-        translateTransition.playFromStart();
-        fadeTransition.playFromStart();
+        gameOver.show("Game Over");
     }
     @Override
     public void onDropped() {}
@@ -88,4 +69,46 @@ final class NotificationOverlay extends StackPane implements Board.BoardListener
     public void onMove(HorizontalDirection horizontalDirection) {}
     @Override
     public void onRotate(HorizontalDirection horizontalDirection) {}
+
+    //Надпись, которая всплывает вверх, появляясь и исчезая. Переходы создаются один раз.
+    private final class Popup {
+        private final Label label = new Label();
+        private final TranslateTransition translateTransition;
+        private final FadeTransition fadeTransition;
+
+        Popup(String styleClass, Duration duration, double byY) {
+            label.getStyleClass().add(styleClass);
+            label.setOpacity(0);
+            label.setVisible(false);
+            getChildren().add(label);
+            translateTransition = new TranslateTransition(duration, label);
+            translateTransition.setFromY(0);
+            translateTransition.setToY(byY);
+            translateTransition.setInterpolator(Interpolator.EASE_OUT);
+            translateTransition.setOnFinished(new EventHandler<ActionEvent>() {
+                @Override
+                public void handle(ActionEvent actionEvent) {
+                    label.setVisible(false);
+                }
+            });
+            fadeTransition = new FadeTransition();
+            fadeTransition.setNode(label);
+            fadeTransition.setFromValue(0);
+            fadeTransition.setToValue(1);
+            fadeTransition.setAutoReverse(true);
+            fadeTransition.setCycleCount(2);
+            fadeTransition.setDuration(duration.divide(fadeTransition.getCycleCount()));
+        }
+
+        void show(String text) {
+            label.setText(text);
+            label.setVisible(true);
+            translateTransition.playFromStart();
+            fadeTransition.playFromStart();
+        }
+
+        boolean isShowing() {
+            return label.isVisible();
+        }
+    }
 }
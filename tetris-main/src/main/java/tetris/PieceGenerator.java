@@ -0,0 +1,134 @@
+package tetris;
+
+import java.nio.ByteBuffer;
+
+//Генератор последовательности фигур без JavaFX.
+//Каждая игра получает свой генератор с явным начальным значением (seed),
+//поэтому две доски с одинаковым seed получают одинаковую последовательность фигур.
+
+final class PieceGenerator {
+    //Количество повторных попыток в режиме HISTORY.
+    private static final int HISTORY_ROLLS = 6;
+
+    //Способ выбора следующей фигуры.
+    enum Mode {
+        //Каждая фигура выбирается случайно и независимо от предыдущих.
+        RANDOM,
+        //Все семь фигур перемешиваются в "мешке" и выдаются по очереди.
+        BAG,
+        //Фигура выбирается заново, если она есть среди четырех последних (до HISTORY_ROLLS раз).
+        HISTORY
+    }
+
+    private final Mode mode;
+    //Состояние генератора псевдослучайных чисел (SplitMix64).
+    private long state;
+    //Мешок фигур для режима BAG и индекс следующей фигуры в нем.
+    private final int[] bag = new int[TetrominoDefinition.count()];
+    private int bagIndex = bag.length;
+    //Последние выданные фигуры для режима HISTORY.
+    private final int[] history = new int[4];
+    private int historyIndex;
+
+    PieceGenerator(Mode mode, long seed) {
+        this.mode = mode;
+        reset(seed);
+    }
+
+    //Начинает последовательность заново с начальным значением seed, как новый генератор.
+    public void reset(long seed) {
+        state = seed;
+        bagIndex = bag.length;
+        historyIndex = 0;
+        // Как в TGM: в начале история заполнена фигурами Z и S, чтобы первая фигура не была S или Z.
+        for (int i = 0; i < history.length; i++) {
+            history[i] = i % 2 == 0 ? TetrominoDefinition.Z.getType() : TetrominoDefinition.S.getType();
+        }
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    //Возвращает номер следующей фигуры.
+    public int next() {
+        switch (mode) {
+            case BAG:
+                if (bagIndex == bag.length) {
+                    fillBag();
+                }
+                return bag[bagIndex++];
+            case HISTORY:
+                int type = nextInt(bag.length);
+                for (int roll = 1; roll < HISTORY_ROLLS && inHistory(type); roll++) {
+                    type = nextInt(bag.length);
+                }
+                history[historyIndex] = type;
+                historyIndex = (historyIndex + 1) % history.length;
+                return type;
+            default:
+                return nextInt(bag.length);
+        }
+    }
+
+    //Перемешивает новый мешок (тасование Фишера - Йетса).
+    private void fillBag() {
+        for (int i = 0; i < bag.length; i++) {
+            bag[i] = i;
+        }
+        for (int i = bag.length - 1; i > 0; i--) {
+            int j = nextInt(i + 1);
+            int t = bag[i];
+            bag[i] = bag[j];
+            bag[j] = t;
+        }
+        bagIndex = 0;
+    }
+
+    private boolean inHistory(int type) {
+        for (int h : history) {
+            if (h == type) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    //Записывает состояние генератора. Режим не записывается: его задает тот, кто создает генератор.
+    public void save(ByteBuffer buffer) {
+        buffer.putLong(state);
+        for (int type : bag) {
+            buffer.put((byte) type);
+        }
+        buffer.put((byte) bagIndex);
+        for (int type : history) {
+            buffer.put((byte) type);
+        }
+        buffer.put((byte) historyIndex);
+    }
+
+    //Восстанавливает состояние, записанное save(). После этого генератор выдает те же фигуры, что и записанный.
+    public void restore(ByteBuffer buffer) {
+        state = buffer.getLong();
+        for (int i = 0; i < bag.length; i++) {
+            bag[i] = buffer.get();
+        }
+        bagIndex = buffer.get();
+        for (int i = 0; i < history.length; i++) {
+            history[i] = buffer.get();
+        }
+        historyIndex = buffer.get();
+    }
+
+    //Равномерное число от 0 до bound - 1.
+    private int nextInt(int bound) {
+        return (int) (((nextLong() >>> 32) * bound) >>> 32);
+    }
+
+    private long nextLong() {
+        long z = (state += 0x9E3779B97F4A7C15L);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
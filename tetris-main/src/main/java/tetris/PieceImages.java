@@ -0,0 +1,65 @@
+package tetris;
+import javafx.scene.Group;
+import javafx.scene.SnapshotParameters;
+import javafx.scene.effect.DropShadow;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+import javafx.scene.paint.Color;
+
+import java.util.Arrays;
+
+//Заранее отрисованные изображения фигур в начальном положении для предварительного просмотра.
+//Изображение каждой фигуры создается один раз для размера клетки и используется всеми ячейками просмотра.
+
+final class PieceImages {
+    //Изображения по номеру фигуры, null - еще не создано.
+    private final Image[] images = new Image[TetrominoDefinition.count()];
+    //Изображения клеток, из которых собираются фигуры.
+    private final BlockSprites sprites = new BlockSprites();
+    //Размер клетки, для которого созданы изображения.
+    private double size;
+
+    //Возвращает изображение фигуры с клеткой size x size.
+    public Image get(TetrominoDefinition definition, double size) {
+        if (size != this.size) {
+            invalidate();
+            this.size = size;
+        }
+        Image image = images[definition.getType()];
+        if (image == null) {
+            image = render(definition, size);
+            images[definition.getType()] = image;
+        }
+        return image;
+    }
+
+    //Забывает все изображения, например после изменения размера клетки.
+    public void invalidate() {
+        Arrays.fill(images, null);
+    }
+
+    //Собирает фигуру из изображений клеток и отбрасывает тень.
+    private Image render(TetrominoDefinition definition, double size) {
+        int[][] matrix = definition.getMatrix(0);
+        Group group = new Group();
+        for (int i = 0; i < matrix.length; i++) {
+            for (int j = 0; j < matrix[i].length; j++) {
+                if (matrix[i][j] == 1) {
+                    ImageView cell = new ImageView(sprites.get(definition.getType(), 0, size));
+                    cell.setFitWidth(size);
+                    cell.setFitHeight(size);
+                    cell.setX(j * size);
+                    cell.setY(i * size);
+                    group.getChildren().add(cell);
+                }
+            }
+        }
+        DropShadow dropShadow = new DropShadow();
+        dropShadow.setColor(Color.DARKGREY);
+        dropShadow.setRadius(20);
+        group.setEffect(dropShadow);
+        SnapshotParameters parameters = new SnapshotParameters();
+        parameters.setFill(Color.TRANSPARENT);
+        return group.snapshot(parameters, null);
+    }
+}
@@ -0,0 +1,77 @@
+package tetris;
+
+import java.nio.ByteBuffer;
+
+//Очередь следующих фигур фиксированного размера (кольцевой буфер).
+//При появлении фигуры элементы не сдвигаются: освободившаяся ячейка сразу заполняется новой фигурой.
+
+final class PieceQueue {
+    private final PieceGenerator generator;
+    //Номера ожидающих фигур, ring[head] появится следующей.
+    private final int[] ring;
+    private int head;
+
+    /**
+     * @param generator генератор фигур.
+     * @param previews  количество фигур, которые видны заранее.
+     */
+    PieceQueue(PieceGenerator generator, int previews) {
+        this.generator = generator;
+        this.ring = new int[Math.max(0, previews)];
+        for (int i = 0; i < ring.length; i++) {
+            ring[i] = generator.next();
+        }
+    }
+
+    //Забирает следующую фигуру и дополняет очередь.
+    public TetrominoDefinition take() {
+        if (ring.length == 0) {
+            return TetrominoDefinition.get(generator.next());
+        }
+        int type = ring[head];
+        ring[head] = generator.next();
+        head = head + 1 == ring.length ? 0 : head + 1;
+        return TetrominoDefinition.get(type);
+    }
+
+    /**
+     * Возвращает ожидающую фигуру, не забирая её.
+     *
+     * @param index 0 - следующая фигура, 1 - после неё и т.д.
+     */
+    public TetrominoDefinition peek(int index) {
+        int i = head + index;
+        return TetrominoDefinition.get(ring[i >= ring.length ? i - ring.length : i]);
+    }
+
+    //Количество видимых заранее фигур.
+    public int size() {
+        return ring.length;
+    }
+
+    public PieceGenerator getGenerator() {
+        return generator;
+    }
+
+    //Записывает ожидающие фигуры и состояние генератора.
+    public void save(ByteBuffer buffer) {
+        buffer.put((byte) ring.length);
+        for (int type : ring) {
+            buffer.put((byte) type);
+        }
+        buffer.put((byte) head);
+        generator.save(buffer);
+    }
+
+    //Восстанавливает состояние, записанное save() для очереди того же размера.
+    public void restore(ByteBuffer buffer) {
+        if (buffer.get() != ring.length) {
+            throw new IllegalArgumentException("Queue size does not match");
+        }
+        for (int i = 0; i < ring.length; i++) {
+            ring[i] = buffer.get();
+        }
+        head = buffer.get();
+        generator.restore(buffer);
+    }
+}
@@ -0,0 +1,307 @@
+package tetris;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+//Бот, который выбирает место для фигуры перебором.
+//Для фигуры перебираются все достижимые пары (поворот, столбец): повороты с таблицей смещений, как у игрока,
+//затем сдвиги по строке появления и сброс. Доска после каждого хода оценивается по высоте стопки,
+//удаленным строкам, дырам и неровности поверхности. С заглядыванием вперед для каждого хода перебираются
+//ходы следующих фигур из очереди, и ход оценивается по лучшему продолжению.
+//Ходы первой фигуры оцениваются параллельно в ForkJoinPool: из потока пула они разветвляются в нем же,
+//из другого потока передаются в пул одной задачей. Глубина увеличивается, пока не кончится
+//время на фигуру: если поиск не успел, берется ход предыдущей глубины, поэтому ход есть всегда.
+
+final class PlacementBot implements InputPolicy {
+    //Номера весов оценки.
+    static final int HEIGHT = 0;
+    static final int LINES = 1;
+    static final int HOLES = 2;
+    static final int BUMPINESS = 3;
+    static final int WEIGHT_COUNT = 4;
+    //Веса по умолчанию: сумма высот столбцов, удаленные строки, дыры, неровность.
+    static final double[] DEFAULT_WEIGHTS = {-0.510066, 0.760666, -0.35663, -0.184483};
+    //Оценка хода, после которого следующая фигура не может появиться.
+    private static final double LOSS = -1e12;
+
+    //Выбранный ход: состояние поворота, столбец и оценка.
+    static final class Placement {
+        private final int rotation;
+        private final int x;
+        private final double score;
+
+        private Placement(int rotation, int x, double score) {
+            this.rotation = rotation;
+            this.x = x;
+            this.score = score;
+        }
+
+        public int getRotation() {
+            return rotation;
+        }
+
+        public int getX() {
+            return x;
+        }
+
+        public double getScore() {
+            return score;
+        }
+    }
+
+    private final double[] weights;
+    //Сколько следующих фигур учитывается.
+    private final int lookahead;
+    //Время на одну фигуру, 0 - без ограничения.
+    private final long budgetNanos;
+    private final ForkJoinPool pool;
+
+    /**
+     * @param weights     веса оценки (WEIGHT_COUNT значений).
+     * @param lookahead   сколько следующих фигур из очереди учитывается.
+     * @param budgetNanos время на одну фигуру в наносекундах, 0 - без ограничения (результат не зависит от скорости машины).
+     * @param pool        пул, в котором оцениваются ходы, null - ходы оцениваются в вызывающем потоке.
+     */
+    PlacementBot(double[] weights, int lookahead, long budgetNanos, ForkJoinPool pool) {
+        if (weights.length != WEIGHT_COUNT) {
+            throw new IllegalArgumentException("Expected " + WEIGHT_COUNT + " weights");
+        }
+        this.weights = weights.clone();
+        this.lookahead = lookahead;
+        this.budgetNanos = budgetNanos;
+        this.pool = pool;
+    }
+
+    @Override
+    public void place(Simulation simulation) {
+        Placement placement = choose(simulation.getEngine(), simulation.getPieceQueue());
+        InputPolicy.moveTo(simulation, placement.rotation, placement.x);
+    }
+
+    //Выбирает ход для текущей фигуры engine, следующие фигуры берутся из pieceQueue.
+    public Placement choose(BoardEngine engine, PieceQueue pieceQueue) {
+        TetrominoDefinition[] next = new TetrominoDefinition[Math.min(lookahead, pieceQueue.size())];
+        for (int i = 0; i < next.length; i++) {
+            next[i] = pieceQueue.peek(i);
+        }
+        return choose(engine, next);
+    }
+
+    /**
+     * Выбирает ход для текущей фигуры engine. Состояние engine не меняется.
+     *
+     * @param next следующие фигуры, учитывается не больше lookahead.
+     */
+    public Placement choose(BoardEngine engine, TetrominoDefinition[] next) {
+        long deadline = budgetNanos > 0 ? System.nanoTime() + budgetNanos : Long.MAX_VALUE;
+        BoardEngine root = new BoardEngine(engine.getWidth(), engine.getHeight());
+        root.copyFrom(engine);
+        int[] moves = new int[3 * 4 * (engine.getWidth() + 4)];
+        int count = enumerate(root, moves);
+        if (count == 0) {
+            return new Placement(engine.getRotation(), engine.getX(), LOSS);
+        }
+        // Без заглядывания ходы оцениваются сразу: это быстро, и ход будет, даже если время уже вышло.
+        Placement best = search(root, moves, count, new TetrominoDefinition[0], Long.MAX_VALUE);
+        for (int depth = 1; depth <= Math.min(lookahead, next.length); depth++) {
+            Placement deeper = search(root, moves, count, Arrays.copyOf(next, depth), deadline);
+            if (deeper == null) {
+                break;
+            }
+            best = deeper;
+        }
+        return best;
+    }
+
+    //Оценивает ходы текущей фигуры с заглядыванием на фигуры next. null, если время вышло.
+    private Placement search(final BoardEngine root, final int[] moves, int count, final TetrominoDefinition[] next,
+                             final long deadline) {
+        final double[] scores = new double[count];
+        if (next.length == 0 || pool == null) {
+            for (int i = 0; i < count; i++) {
+                new Candidate(weights, root, moves, i, next, scores, deadline).compute();
+            }
+        } else {
+            final List<Candidate> candidates = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                candidates.add(new Candidate(weights, root, moves, i, next, scores, deadline));
+            }
+            if (ForkJoinTask.getPool() == pool) {
+                // Уже в потоке пула: вложенный invoke() занял бы поток ожиданием, ходы разветвляются здесь.
+                ForkJoinTask.invokeAll(candidates);
+            } else {
+                pool.invoke(new RecursiveAction() {
+                    @Override
+                    protected void compute() {
+                        invokeAll(candidates);
+                    }
+                });
+            }
+        }
+        int best = 0;
+        for (int i = 0; i < count; i++) {
+            if (Double.isNaN(scores[i])) {
+                return null;
+            }
+            if (scores[i] > scores[best]) {
+                best = i;
+            }
+        }
+        return new Placement(moves[best * 3], moves[best * 3 + 1], scores[best]);
+    }
+
+    //Оценка одного хода первой фигуры с лучшим продолжением. Выполняется в пуле.
+    private static final class Candidate extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final double[] weights;
+        private final BoardEngine root;
+        private final int[] moves;
+        private final int index;
+        private final TetrominoDefinition[] next;
+        private final double[] scores;
+        private final long deadline;
+
+        Candidate(double[] weights, BoardEngine root, int[] moves, int index, TetrominoDefinition[] next, double[] scores,
+                  long deadline) {
+            this.weights = weights;
+            this.root = root;
+            this.moves = moves;
+            this.index = index;
+            this.next = next;
+            this.scores = scores;
+            this.deadline = deadline;
+        }
+
+        @Override
+        protected void compute() {
+            // Доски и списки ходов для каждого уровня перебора, общие для всех ходов уровня.
+            BoardEngine[] boards = new BoardEngine[next.length + 1];
+            int[][] levelMoves = new int[next.length][];
+            for (int level = 0; level < boards.length; level++) {
+                boards[level] = new BoardEngine(root.getWidth(), root.getHeight());
+            }
+            for (int level = 0; level < levelMoves.length; level++) {
+                levelMoves[level] = new int[moves.length];
+            }
+            int lines = apply(root, boards[0], root.getPiece(), moves, index);
+            scores[index] = value(boards, levelMoves, 0, lines);
+        }
+
+        //Лучшая оценка доски boards[level] после ходов фигур next[level..]. NaN, если время вышло.
+        private double value(BoardEngine[] boards, int[][] levelMoves, int level, int lines) {
+            BoardEngine board = boards[level];
+            if (level == next.length) {
+                return System.nanoTime() > deadline ? Double.NaN : evaluate(weights, board, lines);
+            }
+            TetrominoDefinition piece = next[level];
+            board.spawn(piece);
+            if (board.intersects(piece, 0, board.getX(), board.getY())) {
+                return LOSS;
+            }
+            int[] moves = levelMoves[level];
+            int count = enumerate(board, moves);
+            double best = LOSS;
+            for (int i = 0; i < count; i++) {
+                int cleared = apply(board, boards[level + 1], piece, moves, i);
+                double value = value(boards, levelMoves, level + 1, lines + cleared);
+                if (Double.isNaN(value)) {
+                    return value;
+                }
+                best = Math.max(best, value);
+            }
+            return best;
+        }
+    }
+
+    /**
+     * Перебирает достижимые ходы текущей фигуры board из её положения.
+     * Ход i записывается в moves[3 * i .. 3 * i + 2]: состояние поворота, столбец и строка приземления.
+     * Положение фигуры в board меняется.
+     *
+     * @return количество ходов.
+     */
+    static int enumerate(BoardEngine board, int[] moves) {
+        TetrominoDefinition piece = board.getPiece();
+        int startRotation = board.getRotation(), startX = board.getX(), startY = board.getY();
+        int count = 0;
+        for (int turns = 0; turns < 4; turns++) {
+            board.setPiece(piece, startRotation, startX, startY);
+            // Тот же путь, что у InputPolicy.moveTo(): три поворота по часовой стрелке - это один против.
+            boolean clockwise = turns != 3;
+            boolean rotated = true;
+            for (int i = clockwise ? turns : 1; i > 0 && rotated; i--) {
+                rotated = board.tryRotate(clockwise);
+            }
+            if (!rotated) {
+                continue;
+            }
+            int rotation = board.getRotation(), y = board.getY();
+            for (int x = board.getX(); !board.intersects(piece, rotation, x, y); x--) {
+                count = add(board, moves, count, piece, rotation, x, y);
+            }
+            for (int x = board.getX() + 1; !board.intersects(piece, rotation, x, y); x++) {
+                count = add(board, moves, count, piece, rotation, x, y);
+            }
+        }
+        board.setPiece(piece, startRotation, startX, startY);
+        return count;
+    }
+
+    private static int add(BoardEngine board, int[] moves, int count, TetrominoDefinition piece, int rotation, int x, int y) {
+        moves[count * 3] = rotation;
+        moves[count * 3 + 1] = x;
+        moves[count * 3 + 2] = board.landingY(piece, rotation, x, y);
+        return count + 1;
+    }
+
+    //Копирует from в to и выполняет на to ход i из moves. Возвращает количество удаленных строк.
+    private static int apply(BoardEngine from, BoardEngine to, TetrominoDefinition piece, int[] moves, int i) {
+        to.copyFrom(from);
+        int rotation = moves[i * 3], x = moves[i * 3 + 1], y = moves[i * 3 + 2];
+        to.place(piece, rotation, x, y);
+        return to.clearRows(to.completeRows(y, piece.size()), y);
+    }
+
+    //Оценка доски после хода, при котором удалено lines строк.
+    static double evaluate(double[] weights, BoardEngine board, int lines) {
+        int height = board.getHeight();
+        int aggregate = 0, holes = 0, bumpiness = 0, previous = 0;
+        for (int column = 0; column < board.getWidth(); column++) {
+            int top = board.getColumnTop(column);
+            int columnHeight = height - top;
+            aggregate += columnHeight;
+            if (column > 0) {
+                bumpiness += Math.abs(columnHeight - previous);
+            }
+            previous = columnHeight;
+            for (int row = top + 1; row < height; row++) {
+                if (!board.isOccupied(column, row)) {
+                    holes++;
+                }
+            }
+        }
+        return weights[HEIGHT] * aggregate + weights[LINES] * lines + weights[HOLES] * holes
+                + weights[BUMPINESS] * bumpiness;
+    }
+
+    //Разбирает веса через запятую, например из --weights=-0.51,0.76,-0.36,-0.18.
+    static double[] parseWeights(String text) {
+        String[] values = text.split(",");
+        if (values.length != WEIGHT_COUNT) {
+            throw new IllegalArgumentException("Expected " + WEIGHT_COUNT + " comma-separated weights: " + text);
+        }
+        double[] weights = new double[WEIGHT_COUNT];
+        for (int k = 0; k < WEIGHT_COUNT; k++) {
+            weights[k] = Double.parseDouble(values[k].trim());
+        }
+        return weights;
+    }
+
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+}
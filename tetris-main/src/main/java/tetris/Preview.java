@@ -1,97 +1,91 @@
 package tetris;
 import javafx.animation.FadeTransition;
-import javafx.animation.PauseTransition;
-import javafx.animation.ScaleTransition;
-import javafx.animation.SequentialTransition;
-import javafx.collections.ListChangeListener;
-import javafx.collections.ObservableList;
-import javafx.event.ActionEvent;
-import javafx.event.EventHandler;
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
 import javafx.geometry.Pos;
-import javafx.scene.Group;
-import javafx.scene.Node;
-import javafx.scene.effect.DropShadow;
+import javafx.scene.image.ImageView;
 import javafx.scene.layout.StackPane;
-import javafx.scene.paint.Color;
+import javafx.scene.layout.VBox;
 import javafx.util.Duration;
 
-import java.util.HashMap;
-import java.util.Map;
-//Предварительный просмотр следующей фигуры
+//Предварительный просмотр следующих фигур
 final class Preview extends StackPane {
 
-    private Map<Tetromino, Node> cloneToNode = new HashMap<>(); //клонирование узла
-    private Map<Tetromino, Tetromino> tetrominoToClone = new HashMap<>();//клонирование тетромино
+    private final Board board;
+    //Изображения фигур, общие для всех ячеек.
+    private final PieceImages images = new PieceImages();
+    //Ячейки для каждой видимой заранее фигуры, сверху - следующая.
+    private final VBox slots = new VBox(10);
+    //Изображение в каждой ячейке и переход, которым оно появляется.
+    private ImageView[] views = new ImageView[0];
+    private FadeTransition[] fades = new FadeTransition[0];
+    //Фигуры, которые сейчас показаны в ячейках.
+    private TetrominoDefinition[] shown = new TetrominoDefinition[0];
     public Preview(GameController gameController) {
-        final ObservableList<Tetromino> tetrominos = gameController.getBoard().getWaitingTetrominos();
-        tetrominos.addListener(new ListChangeListener<Tetromino>() {
+        board = gameController.getBoard();
+        // Очередь обновляется при каждом появлении фигуры.
+        board.spawnedProperty().addListener(new ChangeListener<Number>() {
             @Override
-            public void onChanged(Change<? extends Tetromino> change) {
-
-                while (change.next()) {
-                    if (change.wasRemoved()) {
-                        for (final Tetromino tetromino : change.getRemoved()) {
-                            final Tetromino clone = tetrominoToClone.remove(tetromino);
-                            final Node group = cloneToNode.remove(clone);
-                            FadeTransition fadeOutTransition = new FadeTransition(Duration.seconds(0.1), group);
-                            fadeOutTransition.setToValue(0);
-                            fadeOutTransition.setFromValue(1);
-                            fadeOutTransition.setOnFinished(new EventHandler<ActionEvent>() {
-                                @Override
-                                public void handle(ActionEvent actionEvent) {
-                                    getChildren().remove(group);
-                                }
-                            });
-                            fadeOutTransition.playFromStart();
-                        }
-                    }
-                    if (change.wasAdded()) {
-                        if (change.getList().size() == 1) return;
-                        for (Tetromino added : change.getAddedSubList()) {
-                            SequentialTransition sequentialTransition = new SequentialTransition();
-                            Tetromino clone = added.clone();
-                            Group group = new Group();
-                            DropShadow dropShadow = new DropShadow();
-                            dropShadow.setColor(Color.DARKGREY);
-                            dropShadow.setRadius(20);
-                            group.setEffect(dropShadow);
-                            group.setOpacity(0);
-                            group.getChildren().add(clone);
-                            getChildren().add(group);
-                            ScaleTransition scaleTransition = new ScaleTransition(Duration.seconds(0.2), group);
-                            scaleTransition.setFromX(0);
-                            scaleTransition.setFromZ(0);
-                            scaleTransition.setFromY(0);
-                            scaleTransition.setToX(1);
-                            scaleTransition.setToZ(1);
-                            scaleTransition.setToY(1);
-                            //scaleTransition.play();
-                            FadeTransition fadeTransition = new FadeTransition(Duration.seconds(0.1), group);
-                            fadeTransition.setFromValue(0);
-                            fadeTransition.setToValue(1);
-                            sequentialTransition.getChildren().add(new PauseTransition(Duration.seconds(0.1)));
-                            sequentialTransition.getChildren().add(fadeTransition);
-                            sequentialTransition.playFromStart();
-
-                            tetrominoToClone.put(added, clone);
-                            cloneToNode.put(clone, group);
-                        }
-
-
+            public void changed(ObservableValue<? extends Number> observableValue, Number number, Number number2) {
+                update(board.getPieceQueue());
+            }
+        });
+        // После изменения размера клетки изображения создаются заново.
+        board.squareSizeProperty().addListener(new ChangeListener<Number>() {
+            @Override
+            public void changed(ObservableValue<? extends Number> observableValue, Number number, Number number2) {
+                images.invalidate();
+                for (int i = 0; i < shown.length; i++) {
+                    if (shown[i] != null) {
+                        views[i].setImage(images.get(shown[i], number2.doubleValue()));
                     }
                 }
-                //                if (gameController.getBoard().getTetr)
-
             }
         });
+        slots.setAlignment(Pos.CENTER);
+        getChildren().add(slots);
 
         setPrefHeight(140);
         setPrefWidth(140);
         setAlignment(Pos.CENTER);
+    }
 
-        if (!tetrominos.isEmpty()) {
-            getChildren().addAll(tetrominos.get(0));
+    //Показывает фигуры из очереди. Меняются только ячейки, в которых фигура изменилась.
+    private void update(PieceQueue queue) {
+        int size = queue == null ? 0 : queue.size();
+        if (shown.length != size) {
+            slots.getChildren().clear();
+            shown = new TetrominoDefinition[size];
+            views = new ImageView[size];
+            fades = new FadeTransition[size];
+            for (int i = 0; i < size; i++) {
+                StackPane slot = new StackPane();
+                slot.setPrefHeight(140);
+                slot.setPrefWidth(140);
+                views[i] = new ImageView();
+                fades[i] = new FadeTransition(Duration.seconds(0.1), views[i]);
+                fades[i].setFromValue(0);
+                fades[i].setToValue(1);
+                slot.getChildren().add(views[i]);
+                slots.getChildren().add(slot);
+            }
         }
+        for (int i = 0; i < size; i++) {
+            TetrominoDefinition definition = queue.peek(i);
+            if (shown[i] != definition) {
+                shown[i] = definition;
+                show(i, definition);
+            }
+        }
+    }
 
+    //Заменяет изображение в ячейке и плавно показывает его.
+    private void show(int slot, TetrominoDefinition definition) {
+        double size = board.getSquareSize();
+        if (!(size > 0)) {
+            return;
+        }
+        views[slot].setImage(images.get(definition, size));
+        fades[slot].playFromStart();
     }
 }
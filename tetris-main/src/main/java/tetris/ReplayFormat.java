@@ -0,0 +1,74 @@
+package tetris;
+
+import java.nio.ByteBuffer;
+
+//Формат записи игры.
+//Заголовок: MAGIC, VERSION, ширина и высота доски (short), количество видимых фигур, режим генератора, seed (long)
+//и интервал ключевых кадров в тактах (varint).
+//Далее идут записи. Запись начинается с varint (delta << 4 | op), где delta - сколько тактов прошло
+//с предыдущей записи, а op - вид записи. Ввод в пределах восьми тактов занимает один байт.
+//Ключевой кадр после этого содержит длину (varint) и состояние Simulation.save().
+//Записи применяются в порядке файла: запись с тактом t выполняется до такта t + 1.
+
+final class ReplayFormat {
+    static final int MAGIC = 0x54545250; // "TTRP"
+    static final byte VERSION = 1;
+    //Размер заголовка без интервала ключевых кадров.
+    static final int HEADER_SIZE = 4 + 1 + 2 + 2 + 1 + 1 + 8;
+
+    //Виды записей.
+    static final int MOVE_LEFT = 0, MOVE_RIGHT = 1, ROTATE_LEFT = 2, ROTATE_RIGHT = 3,
+            SOFT_DROP_ON = 4, SOFT_DROP_OFF = 5, HARD_DROP = 6, KEYFRAME = 7, END = 8;
+    private static final int OP_BITS = 4;
+
+    private ReplayFormat() {
+    }
+
+    static void putHeader(ByteBuffer buffer, int width, int height, int previews, PieceGenerator.Mode mode,
+                          long seed, int keyframeTicks) {
+        buffer.putInt(MAGIC);
+        buffer.put(VERSION);
+        buffer.putShort((short) width);
+        buffer.putShort((short) height);
+        buffer.put((byte) previews);
+        buffer.put((byte) mode.ordinal());
+        buffer.putLong(seed);
+        putVarLong(buffer, keyframeTicks);
+    }
+
+    //Записывает начало записи вида op через delta тактов после предыдущей.
+    static void putRecord(ByteBuffer buffer, int op, long delta) {
+        putVarLong(buffer, delta << OP_BITS | op);
+    }
+
+    static int op(long record) {
+        return (int) (record & ((1 << OP_BITS) - 1));
+    }
+
+    static long delta(long record) {
+        return record >>> OP_BITS;
+    }
+
+    //Беззнаковое число по 7 бит в байте, старший бит означает продолжение.
+    static void putVarLong(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) (value & 0x7F | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    static long getVarLong(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+            if (shift > 56) {
+                throw new IllegalArgumentException("Malformed varint");
+            }
+        }
+    }
+}
@@ -0,0 +1,381 @@
+package tetris;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+//Воспроизведение записи игры (ReplayFormat).
+//Игра начинается с того же seed, и перед каждым тактом Simulation получает ввод, записанный в этом такте.
+//Так как правила зависят только от тактов и ввода, игра повторяется точно. Ключевые кадры
+//при воспроизведении сравниваются с состоянием игры, а при переходе к такту служат точкой начала.
+//Доска воспроизводит запись в своем игровом цикле с нужной скоростью, а main() - без JavaFX
+//с максимальной скоростью.
+
+final class ReplayPlayer {
+    //Получатель записанного ввода: доска или сама Simulation.
+    interface Controls {
+        void move(int dx);
+
+        void rotate(boolean clockwise);
+
+        void setSoftDrop(boolean softDrop);
+
+        void hardDrop();
+    }
+
+    private final ByteBuffer data;
+    private final int width, height, previews;
+    private final PieceGenerator.Mode mode;
+    private final long seed;
+    private final int keyframeInterval;
+    //Положение первой записи.
+    private final int firstRecord;
+    //Ключевые кадры: такт, положение состояния, его длина и положение следующей записи.
+    private long[] keyframeTicks = new long[16];
+    private int[] keyframeStates = new int[16];
+    private int[] keyframeLengths = new int[16];
+    private int[] keyframeNext = new int[16];
+    private int keyframes;
+    //Такт последней записи файла.
+    private long endTick;
+
+    private Simulation simulation;
+    private Controls controls;
+    private ByteBuffer scratch;
+    //Следующая запись: вид (-1 - записи переданы до конца), такт, положение состояния ключевого кадра и его длина.
+    private int nextOp = -1;
+    private long nextTick;
+    private int nextState, nextLength;
+    private int position;
+    private int verified, mismatches;
+
+    private ReplayPlayer(ByteBuffer data) throws IOException {
+        this.data = data;
+        if (data.remaining() < ReplayFormat.HEADER_SIZE || data.getInt() != ReplayFormat.MAGIC) {
+            throw new IOException("Not a replay file");
+        }
+        if (data.get() != ReplayFormat.VERSION) {
+            throw new IOException("Unsupported replay version");
+        }
+        width = data.getShort();
+        height = data.getShort();
+        previews = data.get();
+        mode = PieceGenerator.Mode.values()[data.get()];
+        seed = data.getLong();
+        keyframeInterval = (int) ReplayFormat.getVarLong(data);
+        firstRecord = data.position();
+        index();
+    }
+
+    //Открывает файл записи. Файл отображается в память, а не читается целиком.
+    static ReplayPlayer open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new ReplayPlayer(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    //Просматривает записи и запоминает положения ключевых кадров и последний такт.
+    private void index() {
+        position = firstRecord;
+        nextTick = 0;
+        for (readNext(); nextOp >= 0; readNext()) {
+            endTick = nextTick;
+            if (nextOp == ReplayFormat.END) {
+                break;
+            }
+            if (nextOp == ReplayFormat.KEYFRAME) {
+                if (keyframes == keyframeTicks.length) {
+                    keyframeTicks = Arrays.copyOf(keyframeTicks, keyframes * 2);
+                    keyframeStates = Arrays.copyOf(keyframeStates, keyframes * 2);
+                    keyframeLengths = Arrays.copyOf(keyframeLengths, keyframes * 2);
+                    keyframeNext = Arrays.copyOf(keyframeNext, keyframes * 2);
+                }
+                keyframeTicks[keyframes] = nextTick;
+                keyframeStates[keyframes] = nextState;
+                keyframeLengths[keyframes] = nextLength;
+                keyframeNext[keyframes] = position;
+                keyframes++;
+            }
+        }
+    }
+
+    //Читает следующую запись. Оборванный конец файла (например, после сбоя) считается концом записи.
+    private void readNext() {
+        try {
+            data.position(position);
+            if (!data.hasRemaining()) {
+                nextOp = -1;
+                return;
+            }
+            long record = ReplayFormat.getVarLong(data);
+            int op = ReplayFormat.op(record);
+            nextTick += ReplayFormat.delta(record);
+            if (op == ReplayFormat.KEYFRAME) {
+                nextLength = (int) ReplayFormat.getVarLong(data);
+                nextState = data.position();
+                if (nextLength > data.remaining()) {
+                    nextOp = -1;
+                    return;
+                }
+                data.position(nextState + nextLength);
+            }
+            nextOp = op;
+            position = data.position();
+        } catch (BufferUnderflowException e) {
+            nextOp = -1;
+        }
+    }
+
+    //Создает очередь фигур записанной игры.
+    public PieceQueue createQueue() {
+        return new PieceQueue(new PieceGenerator(mode, seed), previews);
+    }
+
+    //Начинает воспроизведение с новой очередью фигур.
+    public void start(Simulation simulation, Controls controls) {
+        start(simulation, controls, createQueue());
+    }
+
+    /**
+     * Начинает воспроизведение: simulation начинает игру с записанным seed.
+     *
+     * @param simulation игра с доской записанного размера.
+     * @param controls   получатель записанного ввода.
+     * @param pieceQueue очередь, созданная createQueue().
+     */
+    public void start(Simulation simulation, Controls controls, PieceQueue pieceQueue) {
+        BoardEngine engine = simulation.getEngine();
+        if (engine.getWidth() != width || engine.getHeight() != height) {
+            throw new IllegalArgumentException("Board size does not match the replay: " + width + "x" + height);
+        }
+        this.simulation = simulation;
+        this.controls = controls;
+        simulation.start(pieceQueue);
+        scratch = ByteBuffer.allocate(simulation.getStateSize());
+        position = firstRecord;
+        nextTick = 0;
+        verified = 0;
+        mismatches = 0;
+        readNext();
+    }
+
+    //Передает ввод, записанный в текущем такте. Вызывается перед каждым тактом Simulation.
+    public void beforeTick() {
+        long tick = simulation.getTick();
+        while (nextOp >= 0 && nextTick <= tick) {
+            if (nextOp == ReplayFormat.END) {
+                nextOp = -1;
+                return;
+            }
+            apply(nextOp);
+            readNext();
+        }
+    }
+
+    private void apply(int op) {
+        switch (op) {
+            case ReplayFormat.MOVE_LEFT:
+                controls.move(-1);
+                break;
+            case ReplayFormat.MOVE_RIGHT:
+                controls.move(1);
+                break;
+            case ReplayFormat.ROTATE_LEFT:
+                controls.rotate(false);
+                break;
+            case ReplayFormat.ROTATE_RIGHT:
+                controls.rotate(true);
+                break;
+            case ReplayFormat.SOFT_DROP_ON:
+                controls.setSoftDrop(true);
+                break;
+            case ReplayFormat.SOFT_DROP_OFF:
+                controls.setSoftDrop(false);
+                break;
+            case ReplayFormat.HARD_DROP:
+                controls.hardDrop();
+                break;
+            default:
+                verify();
+        }
+    }
+
+    //Сравнивает состояние игры с ключевым кадром.
+    private void verify() {
+        scratch.clear();
+        simulation.save(scratch);
+        scratch.flip();
+        ByteBuffer stored = data.duplicate();
+        stored.limit(nextState + nextLength).position(nextState);
+        verified++;
+        if (!scratch.equals(stored)) {
+            mismatches++;
+        }
+    }
+
+    /**
+     * Переходит к такту tick: состояние восстанавливается из последнего ключевого кадра перед ним,
+     * а оставшиеся такты выполняются с записанным вводом. Слушатель Simulation о восстановлении не уведомляется.
+     */
+    public void seek(long tick) {
+        int k = keyframes - 1;
+        while (k >= 0 && keyframeTicks[k] > tick) {
+            k--;
+        }
+        long current = simulation.getTick();
+        // Вперед от текущего такта идти не дальше, чем от ключевого кадра.
+        if (current > tick || k >= 0 && keyframeTicks[k] > current) {
+            if (k < 0) {
+                start(simulation, controls);
+            } else {
+                ByteBuffer state = data.duplicate();
+                state.limit(keyframeStates[k] + keyframeLengths[k]).position(keyframeStates[k]);
+                simulation.restore(state);
+                position = keyframeNext[k];
+                nextTick = keyframeTicks[k];
+                readNext();
+            }
+        }
+        while (simulation.getTick() < tick && simulation.isRunning()) {
+            beforeTick();
+            simulation.tick();
+        }
+    }
+
+    //Воспроизводит запись до конца с максимальной скоростью.
+    public void run() {
+        while (nextOp >= 0 && simulation.isRunning()) {
+            beforeTick();
+            if (nextOp >= 0) {
+                simulation.tick();
+            }
+        }
+    }
+
+    //Все записи переданы.
+    public boolean isFinished() {
+        return nextOp < 0;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getPreviews() {
+        return previews;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public PieceGenerator.Mode getMode() {
+        return mode;
+    }
+
+    public int getKeyframeInterval() {
+        return keyframeInterval;
+    }
+
+    public int getKeyframeCount() {
+        return keyframes;
+    }
+
+    public long getEndTick() {
+        return endTick;
+    }
+
+    //Количество проверенных ключевых кадров и кадров, с которыми состояние игры не совпало.
+    public int getVerified() {
+        return verified;
+    }
+
+    public int getMismatches() {
+        return mismatches;
+    }
+
+    //Ввод передается прямо в Simulation, без доски.
+    static Controls controls(final Simulation simulation) {
+        return new Controls() {
+            @Override
+            public void move(int dx) {
+                simulation.move(dx);
+            }
+
+            @Override
+            public void rotate(boolean clockwise) {
+                simulation.rotate(clockwise);
+            }
+
+            @Override
+            public void setSoftDrop(boolean softDrop) {
+                simulation.setSoftDrop(softDrop);
+            }
+
+            @Override
+            public void hardDrop() {
+                simulation.hardDrop();
+            }
+        };
+    }
+
+    /**
+     * Воспроизводит запись без JavaFX с максимальной скоростью и проверяет ключевые кадры.
+     * Аргументы: файл записи и, необязательно, такт, к которому сначала выполняется переход.
+     * Код завершения 1 означает расхождение с ключевым кадром.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: ReplayPlayer <replay file> [seek tick]");
+            System.exit(2);
+        }
+        ReplayPlayer player = open(Paths.get(args[0]));
+        final BoardEngine engine = new BoardEngine(player.width, player.height);
+        final Simulation simulation = new Simulation(engine);
+        final long[] counts = new long[2];
+        simulation.setListener(new Simulation.Listener() {
+            @Override
+            public void onSpawn(TetrominoDefinition piece) {
+                counts[0]++;
+            }
+
+            @Override
+            public void onStep(boolean softDrop) {
+            }
+
+            @Override
+            public void onLock(int completeRows) {
+                counts[1] += Integer.bitCount(completeRows);
+            }
+
+            @Override
+            public void onGameOver() {
+            }
+        });
+        long start = System.nanoTime();
+        player.start(simulation, controls(simulation));
+        if (args.length > 1) {
+            player.seek(Long.parseLong(args[1]));
+            System.out.printf("seek to tick %d: %.3f ms%n", simulation.getTick(), (System.nanoTime() - start) / 1e6);
+        }
+        player.run();
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("seed %d, mode %s, board %dx%d%n", player.seed, player.mode, player.width, player.height);
+        System.out.printf("ticks %d of %d, pieces %d, lines %d, game over %b%n",
+                simulation.getTick(), player.endTick, counts[0], counts[1], simulation.isGameOver());
+        System.out.printf("keyframes %d, verified %d, mismatches %d%n", player.keyframes, player.verified, player.mismatches);
+        System.out.printf("%.3f ms, %.0f ticks/s%n", elapsed / 1e6, simulation.getTick() * 1e9 / Math.max(1, elapsed));
+        if (player.mismatches > 0) {
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package tetris;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+//Запись игры в файл формата ReplayFormat.
+//Поток доски только дописывает ввод в буфер в памяти. Заполненный буфер передается потоку записи,
+//который пишет его в канал файла, а поток доски продолжает в свободный буфер из пула.
+//Поэтому запись не задерживает поток JavaFX, даже если диск медленный.
+
+final class ReplayRecorder implements AutoCloseable {
+    //Интервал ключевых кадров по умолчанию (10 с).
+    static final int KEYFRAME_TICKS = 10 * Simulation.TICKS_PER_SECOND;
+    //Пустой буфер, по которому поток записи закрывает файл.
+    private static final ByteBuffer CLOSE = ByteBuffer.allocate(0);
+
+    private final Simulation simulation;
+    private final int keyframeTicks;
+    private final int capacity;
+    private final LinkedBlockingQueue<ByteBuffer> full = new LinkedBlockingQueue<>();
+    private final ConcurrentLinkedQueue<ByteBuffer> free = new ConcurrentLinkedQueue<>();
+    private final Thread writer;
+    //Буфер, в который сейчас пишет поток доски.
+    private ByteBuffer buffer;
+    //Буфер для состояния ключевого кадра.
+    private final ByteBuffer state;
+    //Такт предыдущей записи и такт, с которого пишется следующий ключевой кадр.
+    private long lastTick;
+    private long nextKeyframe;
+    private boolean closed;
+    //Ошибка записи в файл, если она была. После ошибки запись прекращается.
+    private volatile IOException error;
+
+    /**
+     * Начинает запись игры, которая только что начата в simulation.
+     *
+     * @param path          файл записи. Открывается в потоке записи.
+     * @param seed          начальное значение генератора фигур.
+     * @param mode          режим генератора фигур.
+     * @param keyframeTicks интервал ключевых кадров в тактах.
+     */
+    ReplayRecorder(final Path path, Simulation simulation, long seed, PieceGenerator.Mode mode, int keyframeTicks) {
+        this.simulation = simulation;
+        this.keyframeTicks = keyframeTicks;
+        BoardEngine engine = simulation.getEngine();
+        state = ByteBuffer.allocate(simulation.getStateSize());
+        capacity = Math.max(8192, 2 * state.capacity() + 64);
+        buffer = ByteBuffer.allocate(capacity);
+        ReplayFormat.putHeader(buffer, engine.getWidth(), engine.getHeight(), simulation.getPieceQueue().size(),
+                mode, seed, keyframeTicks);
+        lastTick = simulation.getTick();
+        nextKeyframe = lastTick + keyframeTicks;
+        writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                write(path);
+            }
+        }, "replay-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    //Записывает ввод вида op в текущем такте. Вызывается до того, как ввод передан Simulation.
+    public void input(int op) {
+        if (closed || error != null) {
+            return;
+        }
+        long tick = simulation.getTick();
+        ReplayFormat.putRecord(buffer, op, tick - lastTick);
+        lastTick = tick;
+        if (buffer.remaining() < state.capacity() + 32) {
+            handOff();
+        }
+    }
+
+    //Вызывается после тактов каждого кадра: записывает ключевой кадр, если подошло время.
+    //Ключевой кадр передается потоку записи сразу, поэтому на диске теряется не больше одного интервала.
+    public void frame() {
+        long tick = simulation.getTick();
+        if (closed || error != null || tick < nextKeyframe) {
+            return;
+        }
+        nextKeyframe = tick + keyframeTicks;
+        state.clear();
+        simulation.save(state);
+        state.flip();
+        ReplayFormat.putRecord(buffer, ReplayFormat.KEYFRAME, tick - lastTick);
+        ReplayFormat.putVarLong(buffer, state.remaining());
+        buffer.put(state);
+        lastTick = tick;
+        handOff();
+    }
+
+    //Записывает конец игры и передает остаток потоку записи. Не ждет, пока файл будет записан.
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        long tick = simulation.getTick();
+        ReplayFormat.putRecord(buffer, ReplayFormat.END, tick - lastTick);
+        handOff();
+        closed = true;
+        full.add(CLOSE);
+    }
+
+    //Ждет, пока поток записи запишет и закроет файл.
+    public void await() throws IOException, InterruptedException {
+        writer.join();
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    private void handOff() {
+        buffer.flip();
+        full.add(buffer);
+        ByteBuffer next = free.poll();
+        buffer = next != null ? next : ByteBuffer.allocate(capacity);
+    }
+
+    //Цикл потока записи.
+    private void write(Path path) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (true) {
+                ByteBuffer next = full.take();
+                if (next == CLOSE) {
+                    return;
+                }
+                while (next.hasRemaining()) {
+                    channel.write(next);
+                }
+                next.clear();
+                free.add(next);
+            }
+        } catch (IOException e) {
+            error = e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
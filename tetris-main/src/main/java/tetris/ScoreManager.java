@@ -18,29 +18,20 @@ final class ScoreManager implements Board.BoardListener {
     //количество баллов за устраненные строки
     @Override
     public void onRowsEliminated(int rows) {
-        /*switch (rows) {
-            case 1:
-                addScore(40);
-                break;
-            case 2:
-                addScore(100);
-                break;
-            case 3:
-                addScore(300);
-                break;
-            case 4:
-                addScore(1200);
-                break;
-        }*/
+        addScore(points(rows));
+    }
+    //Количество баллов за одновременно устраненные строки. Общая таблица для игры и запусков без JavaFX.
+    static int points(int rows) {
         if (rows == 1) {
-            addScore(40);
+            return 40;
         } else if (rows == 2) {
-            addScore(100);
+            return 100;
         } else if (rows == 3) {
-            addScore(300);
+            return 300;
         } else if (rows == 4) {
-            addScore(1200);
+            return 1200;
         }
+        return 0;
     }
     @Override
     public void onGameOver() {
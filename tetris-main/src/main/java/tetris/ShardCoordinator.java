@@ -0,0 +1,322 @@
+package tetris;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//Пакетный прогон игр в нескольких JVM на одной машине: одна JVM упирается в размер кучи и сборку мусора.
+//Координатор делит игры на участки (shard) подряд идущих seed и запускает рабочие процессы ShardWorker
+//с тем же classpath, то есть с тем же артефактом игры. Рабочие подключаются по TCP к адресу loopback,
+//берут участки по одному и присылают итоги игр пачками. Итоги сразу добавляются в общую статистику,
+//а сыгранные игры отмечаются, поэтому игра не учитывается дважды. Участок рабочего, который завершился
+//или перестал отвечать, возвращается в очередь и достается другому рабочему.
+//Пример: java -cp tetris.jar tetris.ShardCoordinator --workers=4 --games=100000 --policy=lowest
+
+final class ShardCoordinator {
+    //Сообщения. Рабочий: HELLO id, затем RESULTS и DONE. Координатор: ASSIGN и STOP.
+    static final byte HELLO = 1;
+    //ASSIGN: номер участка (int), первый seed (long), количество игр (int).
+    static final byte ASSIGN = 2;
+    //RESULTS: номер участка, количество итогов, затем для каждой игры номер в участке (int),
+    //фигуры, строки, такты (long) и окончена ли игра (byte).
+    static final byte RESULTS = 3;
+    //DONE: номер участка, все игры участка сыграны.
+    static final byte DONE = 4;
+    static final byte STOP = 5;
+    //Параметры координатора. Остальные параметры передаются рабочим (см. BatchRunner).
+    private static final String[] OWN_OPTIONS = {"workers", "games", "shard-size", "seed", "threads", "jvm", "timeout"};
+
+    //Участок: игры с seed firstSeed .. firstSeed + count - 1.
+    private static final class Shard {
+        final int id;
+        final long firstSeed;
+        final int count;
+        //Игры, итоги которых уже учтены.
+        final BitSet done;
+
+        Shard(int id, long firstSeed, int count) {
+            this.id = id;
+            this.firstSeed = firstSeed;
+            this.count = count;
+            this.done = new BitSet(count);
+        }
+
+        boolean isComplete() {
+            return done.cardinality() == count;
+        }
+    }
+
+    private final Map<String, String> options;
+    private final int workers;
+    private final int games;
+    private final int shardSize;
+    private final long seed;
+    //Потоков игры в каждом рабочем.
+    private final int threads;
+    //Параметры JVM рабочих через запятую, например -Xmx256m,-XX:+UseParallelGC.
+    private final String jvm;
+    //Рабочий, который столько миллисекунд ничего не прислал, считается зависшим.
+    private final int timeoutMillis;
+    private Shard[] shards;
+    private final BlockingQueue<Shard> pending = new LinkedBlockingQueue<>();
+    private final CountDownLatch finished = new CountDownLatch(1);
+    private final AtomicInteger alive = new AtomicInteger();
+    //Общая статистика, защищена this.
+    private long played, pieces, lines, ticks, gameOvers;
+    //Сколько раз участок возвращался в очередь.
+    private int reassigned;
+    private int completeShards;
+
+    private ShardCoordinator(Map<String, String> options) {
+        this.options = options;
+        int processors = Runtime.getRuntime().availableProcessors();
+        workers = Integer.parseInt(option("workers", String.valueOf(Math.max(1, processors / 2))));
+        games = Integer.parseInt(option("games", "1000"));
+        shardSize = Integer.parseInt(option("shard-size", "100"));
+        seed = Long.parseLong(option("seed", "1"));
+        threads = Integer.parseInt(option("threads", String.valueOf(Math.max(1, processors / workers))));
+        jvm = option("jvm", "");
+        timeoutMillis = Integer.parseInt(option("timeout", "60000"));
+    }
+
+    private String option(String name, String defaultValue) {
+        String value = options.get(name);
+        return value != null ? value : defaultValue;
+    }
+
+    //Запускает рабочий процесс с тем же classpath, который подключится к port.
+    private Process startWorker(int id, int port) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        for (String option : jvm.split(",")) {
+            if (!option.isEmpty()) {
+                command.add(option);
+            }
+        }
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(ShardWorker.class.getName());
+        command.add("--port=" + port);
+        command.add("--id=" + id);
+        command.add("--threads=" + threads);
+        outer:
+        for (Map.Entry<String, String> entry : options.entrySet()) {
+            for (String own : OWN_OPTIONS) {
+                if (own.equals(entry.getKey())) {
+                    continue outer;
+                }
+            }
+            command.add("--" + entry.getKey() + "=" + entry.getValue());
+        }
+        return new ProcessBuilder(command).redirectOutput(ProcessBuilder.Redirect.INHERIT)
+                .redirectError(ProcessBuilder.Redirect.INHERIT).start();
+    }
+
+    //Следующий несыгранный участок. null, если все участки сыграны.
+    private Shard next() throws InterruptedException {
+        while (finished.getCount() > 0) {
+            Shard shard = pending.poll(100, TimeUnit.MILLISECONDS);
+            if (shard != null && !isComplete(shard)) {
+                return shard;
+            }
+        }
+        return null;
+    }
+
+    private synchronized boolean isComplete(Shard shard) {
+        return shard.isComplete();
+    }
+
+    //Учитывает итог игры index участка shard, если он еще не учтен.
+    private synchronized void merge(Shard shard, int index, long gamePieces, long gameLines, long gameTicks, boolean gameOver) {
+        if (index < 0 || index >= shard.count || shard.done.get(index)) {
+            return;
+        }
+        shard.done.set(index);
+        played++;
+        pieces += gamePieces;
+        lines += gameLines;
+        ticks += gameTicks;
+        gameOvers += gameOver ? 1 : 0;
+        if (shard.isComplete() && ++completeShards == shards.length) {
+            finished.countDown();
+        }
+    }
+
+    //Возвращает участок в очередь, например когда его рабочий завершился.
+    private synchronized void requeue(Shard shard) {
+        if (shard != null && !shard.isComplete()) {
+            reassigned++;
+            pending.add(shard);
+        }
+    }
+
+    //Обслуживает одного рабочего: выдает участки и принимает итоги, пока участки не кончатся или рабочий не отвалится.
+    private void serve(Socket socket, Process[] processes) {
+        Shard shard = null;
+        int id = -1;
+        boolean failed = true;
+        try {
+            socket.setSoTimeout(timeoutMillis);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            if (in.readByte() != HELLO) {
+                throw new IOException("Unexpected message");
+            }
+            id = in.readInt();
+            while ((shard = next()) != null) {
+                out.writeByte(ASSIGN);
+                out.writeInt(shard.id);
+                out.writeLong(shard.firstSeed);
+                out.writeInt(shard.count);
+                out.flush();
+                while (true) {
+                    byte type = in.readByte();
+                    int shardId = in.readInt();
+                    if (shardId != shard.id) {
+                        throw new IOException("Result for shard " + shardId + " while playing " + shard.id);
+                    }
+                    if (type == DONE) {
+                        break;
+                    }
+                    if (type != RESULTS) {
+                        throw new IOException("Unexpected message " + type);
+                    }
+                    for (int n = in.readInt(); n > 0; n--) {
+                        merge(shard, in.readInt(), in.readLong(), in.readLong(), in.readLong(), in.readByte() != 0);
+                    }
+                }
+                // Рабочий прислал DONE, но игр не хватает: участок играется заново, учтенные игры пропускаются.
+                requeue(shard);
+                shard = null;
+            }
+            out.writeByte(STOP);
+            out.flush();
+            failed = false;
+        } catch (SocketTimeoutException e) {
+            System.err.println("worker " + id + " timed out");
+        } catch (IOException e) {
+            System.err.println("worker " + id + " lost: " + e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            requeue(shard);
+            if (failed && id >= 0 && id < processes.length) {
+                processes[id].destroyForcibly();
+            }
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Соединение уже закрыто.
+            }
+            if (alive.decrementAndGet() == 0) {
+                finished.countDown();
+            }
+        }
+    }
+
+    private void run() throws IOException, InterruptedException {
+        int count = (games + shardSize - 1) / shardSize;
+        shards = new Shard[count];
+        for (int i = 0; i < count; i++) {
+            shards[i] = new Shard(i, seed + (long) i * shardSize, Math.min(shardSize, games - i * shardSize));
+            pending.add(shards[i]);
+        }
+        final ServerSocket server = new ServerSocket(0, workers, InetAddress.getLoopbackAddress());
+        final Process[] processes = new Process[workers];
+        long start = System.nanoTime();
+        for (int i = 0; i < workers; i++) {
+            processes[i] = startWorker(i, server.getLocalPort());
+        }
+        alive.set(workers);
+        // Рабочие, которые не подключились за время ожидания, считаются отвалившимися.
+        server.setSoTimeout(timeoutMillis);
+        Thread acceptor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < workers; i++) {
+                    try {
+                        final Socket socket = server.accept();
+                        Thread thread = new Thread(new Runnable() {
+                            @Override
+                            public void run() {
+                                serve(socket, processes);
+                            }
+                        }, "shard-connection");
+                        thread.setDaemon(true);
+                        thread.start();
+                    } catch (IOException e) {
+                        System.err.println("worker did not connect: " + e);
+                        if (alive.decrementAndGet() == 0) {
+                            finished.countDown();
+                        }
+                    }
+                }
+            }
+        }, "shard-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+
+        long lastPlayed = 0, lastTime = start;
+        while (!finished.await(1, TimeUnit.SECONDS)) {
+            long now = System.nanoTime();
+            long current;
+            synchronized (this) {
+                current = played;
+            }
+            System.out.printf("%d/%d games, %d/%d shards, %d workers, %.1f games/s%n", current, games,
+                    completeShards(), shards.length, alive.get(), (current - lastPlayed) * 1e9 / (now - lastTime));
+            lastPlayed = current;
+            lastTime = now;
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        server.close();
+        for (Process process : processes) {
+            if (!process.waitFor(5, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+        }
+        synchronized (this) {
+            System.out.printf("%d of %d games (%d over), %d workers x %d threads, %d shards reassigned%n",
+                    played, games, gameOvers, workers, threads, reassigned);
+            System.out.printf("%.3f s: %.1f games/s, %.0f pieces/s, %.0f lines/s, %.0f ticks/s%n",
+                    seconds, played / seconds, pieces / seconds, lines / seconds, ticks / seconds);
+            if (played > 0) {
+                System.out.printf("per game: %.1f pieces, %.1f lines%n", (double) pieces / played, (double) lines / played);
+            }
+            if (played < games) {
+                System.err.println("all workers lost before the campaign finished");
+                System.exit(1);
+            }
+        }
+    }
+
+    private synchronized int completeShards() {
+        return completeShards;
+    }
+
+    /**
+     * Аргументы в виде --имя=значение: workers, games, shard-size, seed, threads (потоков в рабочем),
+     * jvm (параметры JVM рабочих через запятую), timeout (мс). Остальные параметры передаются
+     * рабочим и задают игры, как у BatchRunner: width, height, previews, mode, policy, max-pieces и т.д.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        new ShardCoordinator(BatchRunner.parseOptions("ShardCoordinator", args)).run();
+    }
+}
@@ -0,0 +1,96 @@
+package tetris;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+//Рабочий процесс ShardCoordinator. Подключается к координатору, получает участки seed,
+//играет их на своем пуле потоков (BatchRunner.play()) и присылает итоги пачками по мере окончания игр.
+//Запускается координатором, сам по себе не нужен.
+
+final class ShardWorker {
+    private ShardWorker() {
+    }
+
+    /**
+     * Аргументы в виде --имя=значение: port и id от координатора, threads, batch (итогов в сообщении)
+     * и параметры игр BatchRunner.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException, ExecutionException {
+        Map<String, String> options = BatchRunner.parseOptions("ShardWorker", args);
+        final BatchRunner runner = new BatchRunner(options);
+        int threads = Integer.parseInt(options.getOrDefault("threads", "1"));
+        int batch = Integer.parseInt(options.getOrDefault("batch", "16"));
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), Integer.parseInt(options.get("port")))) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            out.writeByte(ShardCoordinator.HELLO);
+            out.writeInt(Integer.parseInt(options.get("id")));
+            out.flush();
+            while (in.readByte() == ShardCoordinator.ASSIGN) {
+                int shard = in.readInt();
+                long firstSeed = in.readLong();
+                int count = in.readInt();
+                play(runner, executor, out, batch, shard, firstSeed, count);
+            }
+        } catch (EOFException e) {
+            // Координатор закрыл соединение.
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    //Играет участок и присылает итоги. Пишет в соединение только этот поток.
+    private static void play(final BatchRunner runner, ExecutorService executor, DataOutputStream out, int batch,
+                             int shard, final long firstSeed, int count)
+            throws IOException, InterruptedException, ExecutionException {
+        CompletionService<BatchRunner.Result> completion = new ExecutorCompletionService<>(executor);
+        for (int i = 0; i < count; i++) {
+            final int index = i;
+            completion.submit(new Callable<BatchRunner.Result>() {
+                @Override
+                public BatchRunner.Result call() {
+                    BatchRunner.Result result = runner.play(firstSeed + index);
+                    result.index = index;
+                    return result;
+                }
+            });
+        }
+        BatchRunner.Result[] results = new BatchRunner.Result[batch];
+        int buffered = 0;
+        for (int i = 0; i < count; i++) {
+            results[buffered++] = completion.take().get();
+            if (buffered == batch || i == count - 1) {
+                out.writeByte(ShardCoordinator.RESULTS);
+                out.writeInt(shard);
+                out.writeInt(buffered);
+                for (int k = 0; k < buffered; k++) {
+                    BatchRunner.Result result = results[k];
+                    out.writeInt(result.index);
+                    out.writeLong(result.pieces);
+                    out.writeLong(result.lines);
+                    out.writeLong(result.ticks);
+                    out.writeByte(result.gameOver ? 1 : 0);
+                }
+                out.flush();
+                buffered = 0;
+            }
+        }
+        out.writeByte(ShardCoordinator.DONE);
+        out.writeInt(shard);
+        out.flush();
+    }
+}
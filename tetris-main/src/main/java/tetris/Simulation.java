@@ -0,0 +1,254 @@
+package tetris;
+
+import java.nio.ByteBuffer;
+
+//Правила игры, которые выполняются по тактам фиксированной длины (без JavaFX).
+//Гравитация, фиксация фигуры, задержка после удаления строк и появление новой фигуры
+//отсчитываются в тактах, поэтому ход игры не зависит от частоты кадров и воспроизводим.
+
+final class Simulation {
+    //Количество тактов в секунду.
+    static final int TICKS_PER_SECOND = 60;
+    //Длительность такта в наносекундах.
+    static final long TICK_NANOS = 1_000_000_000L / TICKS_PER_SECOND;
+    //Через сколько тактов фигура опускается на одну строку (0.6 с).
+    static final int GRAVITY_TICKS = 36;
+    //То же при нажатой клавише "Вниз" (около 0.08 с).
+    static final int SOFT_DROP_TICKS = 5;
+    //Сколько тактов падает сброшенная пробелом фигура перед фиксацией (0.1 с).
+    static final int HARD_DROP_TICKS = 6;
+    //Пауза перед появлением новой фигуры, пока удаляются строки (около 0.9 с).
+    static final int CLEAR_TICKS = 55;
+
+    private final BoardEngine engine;
+    private PieceQueue pieceQueue;
+    private Listener listener;
+    //Номер текущего такта.
+    private long tick;
+    //Счетчик тактов до следующего шага гравитации.
+    private int gravityCounter;
+    //Нажата ли клавиша "Вниз".
+    private boolean softDrop;
+    //Тактов до фиксации сброшенной фигуры, -1 - фигура не сбрасывается.
+    private int dropCounter = -1;
+    //Тактов до появления новой фигуры, -1 - фигура уже на доске.
+    private int spawnCounter = -1;
+    private boolean gameOver;
+
+    Simulation(BoardEngine engine) {
+        this.engine = engine;
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    //Начинает новую игру: доска очищается, первая фигура появляется сразу.
+    public void start(PieceQueue pieceQueue) {
+        engine.clear();
+        this.pieceQueue = pieceQueue;
+        tick = 0;
+        softDrop = false;
+        dropCounter = -1;
+        spawnCounter = -1;
+        gameOver = false;
+        spawn();
+    }
+
+    //Останавливает игру и очищает доску.
+    public void stop() {
+        engine.clear();
+        pieceQueue = null;
+        dropCounter = -1;
+        spawnCounter = -1;
+    }
+
+    //Выполняет один такт игры.
+    public void tick() {
+        if (pieceQueue == null || gameOver) {
+            return;
+        }
+        tick++;
+        if (spawnCounter >= 0) {
+            if (spawnCounter-- == 0) {
+                spawn();
+            }
+        } else if (dropCounter >= 0) {
+            if (--dropCounter <= 0) {
+                land();
+            }
+        } else if (engine.hasPiece() && ++gravityCounter >= (softDrop ? SOFT_DROP_TICKS : GRAVITY_TICKS)) {
+            gravityCounter = 0;
+            if (engine.tryMove(0, 1)) {
+                listener.onStep(softDrop);
+            } else {
+                land();
+            }
+        }
+    }
+
+    //Появление новой фигуры. Если ей некуда опуститься, игра окончена.
+    private void spawn() {
+        spawnCounter = -1;
+        gravityCounter = 0;
+        engine.spawn(pieceQueue.take());
+        listener.onSpawn(engine.getPiece());
+        if (!engine.fits(0, 0) || !engine.fits(0, 1)) {
+            land();
+        }
+    }
+
+    //Фигура не может двигаться дальше вниз.
+    private void land() {
+        dropCounter = -1;
+        if (engine.getY() == 0) {
+            //Если фигура не смогла сдвинуться с места и мы все еще находимся в исходной позиции y, то игра окончена.
+            gameOver = true;
+            listener.onGameOver();
+            return;
+        }
+        int y = engine.getY();
+        int completeRows = engine.lock();
+        // Слушатель видит доску с зафиксированной фигурой, но до удаления строк.
+        listener.onLock(completeRows);
+        engine.clearRows(completeRows, y);
+        spawnCounter = completeRows != 0 ? CLEAR_TICKS : 0;
+    }
+
+    //Сдвигает фигуру влево (-1) или вправо (1).
+    public boolean move(int dx) {
+        return canControl() && engine.tryMove(dx, 0);
+    }
+
+    //Поворачивает фигуру.
+    public boolean rotate(boolean clockwise) {
+        return canControl() && engine.tryRotate(clockwise);
+    }
+
+    //Включает или выключает быстрое падение. Следующий шаг отсчитывается заново.
+    public void setSoftDrop(boolean softDrop) {
+        if (this.softDrop != softDrop) {
+            this.softDrop = softDrop;
+            gravityCounter = 0;
+        }
+    }
+
+    //Сбрасывает фигуру в строку приземления. Фигура фиксируется через HARD_DROP_TICKS тактов.
+    public boolean hardDrop() {
+        if (!canControl()) {
+            return false;
+        }
+        engine.tryMove(0, engine.dropDistance());
+        dropCounter = HARD_DROP_TICKS;
+        return true;
+    }
+
+    //Фигурой можно управлять, пока она падает и не сброшена.
+    private boolean canControl() {
+        return !gameOver && engine.hasPiece() && dropCounter < 0;
+    }
+
+    public boolean isDropping() {
+        return dropCounter >= 0;
+    }
+
+    public boolean isSoftDrop() {
+        return softDrop;
+    }
+
+    public boolean isGameOver() {
+        return gameOver;
+    }
+
+    public boolean isRunning() {
+        return pieceQueue != null && !gameOver;
+    }
+
+    //Записывает состояние игры: счетчики тактов, доску с текущей фигурой и очередь фигур.
+    //По этому состоянию restore() продолжает игру точно так же, как продолжилась бы эта.
+    public void save(ByteBuffer buffer) {
+        buffer.putLong(tick);
+        buffer.putInt(gravityCounter);
+        buffer.put((byte) (softDrop ? 1 : 0));
+        buffer.putInt(dropCounter);
+        buffer.putInt(spawnCounter);
+        buffer.put((byte) (gameOver ? 1 : 0));
+        engine.save(buffer);
+        pieceQueue.save(buffer);
+    }
+
+    //Восстанавливает состояние, записанное save(). Игра должна быть начата с очередью того же размера и режима.
+    //Слушатель о восстановлении не уведомляется.
+    public void restore(ByteBuffer buffer) {
+        tick = buffer.getLong();
+        gravityCounter = buffer.getInt();
+        softDrop = buffer.get() != 0;
+        dropCounter = buffer.getInt();
+        spawnCounter = buffer.getInt();
+        gameOver = buffer.get() != 0;
+        engine.restore(buffer);
+        pieceQueue.restore(buffer);
+    }
+
+    //Продолжает сохраненную игру: очередь того же размера и режима, состояние записано save().
+    public void resume(PieceQueue pieceQueue, ByteBuffer buffer) {
+        this.pieceQueue = pieceQueue;
+        restore(buffer);
+    }
+
+    /**
+     * Продолжает игру с появления фигуры piece в такте tick, например при возврате к прежнему состоянию.
+     * Стопка и очередь фигур уже восстановлены. Слушатель о появлении не уведомляется.
+     */
+    public void respawn(TetrominoDefinition piece, long tick) {
+        this.tick = tick;
+        softDrop = false;
+        dropCounter = -1;
+        spawnCounter = -1;
+        gravityCounter = 0;
+        gameOver = false;
+        engine.spawn(piece);
+    }
+
+    //Наибольший размер состояния save() в байтах.
+    public int getStateSize() {
+        return stateSize(engine.getWidth(), engine.getHeight(), pieceQueue == null ? 0 : pieceQueue.size());
+    }
+
+    //Размер состояния save() для доски width x height и очереди из previews фигур.
+    static int stateSize(int width, int height, int previews) {
+        // Счетчики - 22 байта, фигура и вершина стопки - 8, очередь - 2, генератор - 21.
+        return 53 + width * height + previews;
+    }
+
+    public long getTick() {
+        return tick;
+    }
+
+    public BoardEngine getEngine() {
+        return engine;
+    }
+
+    public PieceQueue getPieceQueue() {
+        return pieceQueue;
+    }
+
+    //Получает события игры, чтобы отобразить их.
+    interface Listener {
+        //Появилась новая фигура.
+        void onSpawn(TetrominoDefinition piece);
+
+        //Фигура опустилась на одну строку под действием гравитации.
+        void onStep(boolean softDrop);
+
+        /**
+         * Фигура зафиксирована. Вызывается до удаления строк.
+         *
+         * @param completeRows маска заполненных строк, бит i соответствует строке getEngine().getY() + i.
+         */
+        void onLock(int completeRows);
+
+        //Игра окончена.
+        void onGameOver();
+    }
+}
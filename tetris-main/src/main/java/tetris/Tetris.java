@@ -18,7 +18,7 @@ import static java.lang.Integer.parseInt;
 
 public final class Tetris extends HBox {
     private boolean movingDown = false;
-  // final GameController gameController = new GameController();
+    private final GameController gameController;
 
     public Tetris() {
         setId("tetris");
@@ -32,7 +32,7 @@ public final class Tetris extends HBox {
             }
         });
 
-        final GameController gameController = new GameController();
+        gameController = new GameController();
         //панель для процесса игры
       StackPane stackPane = new StackPane();
         stackPane.getChildren().add(gameController.getBoard());//размещает доску на StackPane
@@ -54,6 +54,21 @@ public final class Tetris extends HBox {
         //Обработка нажатия клавиш
         setOnKeyPressed(new EventHandler<KeyEvent>() {
             public void handle(KeyEvent keyEvent) {
+                // Во время воспроизведения записи фигурой управляет запись.
+                if (gameController.getBoard().isReplaying()) {
+                    return;
+                }
+                // Задержка от нажатия до кадра, в котором оно показано.
+                switch (keyEvent.getCode()) {
+                    case LEFT:
+                    case RIGHT:
+                    case UP:
+                    case DOWN:
+                    case SPACE:
+                        GameMetrics.get().input(System.nanoTime());
+                        break;
+                    default:
+                }
                 if (keyEvent.getCode() == KeyCode.LEFT && !gameController.pausedProperty().get()) {
                     gameController.getBoard().move(HorizontalDirection.LEFT);
                     keyEvent.consume();}
@@ -69,6 +84,11 @@ public final class Tetris extends HBox {
                             gameController.getBoard().moveDownFast();}
                         movingDown = true;
                         keyEvent.consume();}}
+                // Возврат к появлению предыдущей фигуры, в том числе на паузе и после окончания игры.
+                if (keyEvent.getCode() == KeyCode.BACK_SPACE) {
+                    gameController.rewind(1);
+                    keyEvent.consume();
+                }
                 if (keyEvent.getCode() == KeyCode.SPACE && !gameController.pausedProperty().get()) {
                     gameController.getBoard().dropDown();
                     keyEvent.consume();
@@ -81,7 +101,7 @@ public final class Tetris extends HBox {
         setOnKeyReleased(new EventHandler<KeyEvent>() {
             @Override
             public void handle(KeyEvent keyEvent) {
-                if (keyEvent.getCode() == KeyCode.DOWN) {
+                if (keyEvent.getCode() == KeyCode.DOWN && !gameController.getBoard().isReplaying()) {
                     movingDown = false;
                     gameController.getBoard().moveDown();
                 }
@@ -89,4 +109,23 @@ public final class Tetris extends HBox {
         });
 
     }
+
+    //Продолжает сохраненную игру.
+    boolean resume() {
+        return gameController.resume();
+    }
+
+    //Передает управление фигурами боту.
+    void autoplay(PlacementBot bot) {
+        gameController.autoplay(bot);
+    }
+
+    /**
+     * Воспроизводит записанную игру.
+     *
+     * @param speed скорость воспроизведения: 1 - как в игре, 4 - в четыре раза быстрее.
+     */
+    void replay(ReplayPlayer player, double speed) {
+        gameController.replay(player, speed);
+    }
 }
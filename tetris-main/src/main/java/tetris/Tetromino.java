@@ -1,100 +1,37 @@
 package tetris;
 import javafx.beans.property.ReadOnlyDoubleProperty;
-import javafx.beans.value.ChangeListener;
-import javafx.beans.value.ObservableValue;
-import javafx.beans.value.WeakChangeListener;
 import javafx.scene.Group;
-import javafx.scene.effect.Light;
-import javafx.scene.effect.Lighting;
+import javafx.scene.Node;
 import javafx.scene.paint.Color;
 import javafx.scene.paint.Paint;
 import javafx.scene.shape.Rectangle;
-import java.util.Random;
 //Тетромино определение
 final class Tetromino extends Group implements Cloneable {
-    private static final Random RANDOM = new Random();
-    private static final TetrominoDefinition I = new TetrominoDefinition(new int[][]{
-            {0, 0, 0, 0},
-            {1, 1, 1, 1},
-            {0, 0, 0, 0},
-            {0, 0, 0, 0}
-    }, Color.BLUE);
-    private static final TetrominoDefinition J = new TetrominoDefinition(new int[][]{
-            {1, 0, 0},
-            {1, 1, 1},
-            {0, 0, 0}
-    }, Color.PINK);
-
-    private static final TetrominoDefinition L = new TetrominoDefinition(new int[][]{
-            {0, 0, 1},
-            {1, 1, 1},
-            {0, 0, 0}
-    }, Color.ORANGE);
-
-    private static final TetrominoDefinition O = new TetrominoDefinition(new int[][]{
-            {1, 1},
-            {1, 1}
-    }, Color.YELLOW);
-
-    private static final TetrominoDefinition S = new TetrominoDefinition(new int[][]{
-            {0, 1, 1},
-            {1, 1, 0},
-            {0, 0, 0}
-    }, Color.RED);
-
-    private static final TetrominoDefinition T = new TetrominoDefinition(new int[][]{
-            {0, 1, 0},
-            {1, 1, 1},
-            {0, 0, 0}
-    }, Color.PURPLE);
-
-    private static final TetrominoDefinition Z = new TetrominoDefinition(new int[][]{
-            {1, 1, 0},
-            {0, 1, 1},
-            {0, 0, 0}
-    }, Color.GREEN);
-
-    private static final TetrominoDefinition[] TETROMINO_DEFINITIONS = new TetrominoDefinition[]{I, J, L, O, S, T, Z};
-    private Lighting lighting = new Lighting(new Light.Distant(245, 50, Color.WHITE));
-    private int[][] matrix;
+    //Цвета фигур по номеру TetrominoDefinition: I, J, L, O, S, T, Z.
+    private static final Color[] COLORS = new Color[]{Color.BLUE, Color.PINK, Color.ORANGE, Color.YELLOW, Color.RED, Color.PURPLE, Color.GREEN};
     private Paint paint;
+    //Состояние поворота, под которое выбрано освещение клеток.
+    private int lightRotation;
     private TetrominoDefinition tetrominoDefinition;
     private ReadOnlyDoubleProperty squareSize;
     private Tetromino(TetrominoDefinition tetrominoDefinition, ReadOnlyDoubleProperty squareSize) {
-        this.matrix = tetrominoDefinition.matrix;
+        // Узел строится по начальному состоянию, повороты отображаются вращением узла.
+        // Размер клетки нужен только для выбора изображений нужного разрешения.
+        int[][] matrix = tetrominoDefinition.getMatrix(0);
         this.tetrominoDefinition = tetrominoDefinition;
         this.squareSize = squareSize;
-        paint = tetrominoDefinition.color;
-        lighting = new Lighting(new Light.Distant(225, 55, Color.WHITE));
-        lighting.setSurfaceScale(0.8);
+        paint = COLORS[tetrominoDefinition.getType()];
         for (int i = 0; i < matrix.length; i++) {
             for (int j = 0; j < matrix[i].length; j++) {
 
-                final Rectangle rectangle = new Rectangle();
-                final int finalI = i;
-                final int finalJ = j;
-                ChangeListener<Number> changeListener = new ChangeListener<Number>() {
-                    @Override
-                    public void changed(ObservableValue<? extends Number> observableValue, Number number, Number number2) {
-                        rectangle.setWidth(number2.doubleValue());
-                        rectangle.setHeight(number2.doubleValue());
-                        rectangle.setTranslateY(number2.doubleValue() * finalI);
-                        rectangle.setTranslateX(number2.doubleValue() * finalJ);
-                    }
-                };
-                rectangle.setUserData(changeListener);
-                squareSize.addListener(new WeakChangeListener<>(changeListener));
-                rectangle.setWidth(squareSize.doubleValue());
-                rectangle.setHeight(squareSize.get());
-                rectangle.setTranslateY(squareSize.get() * finalI);
-                rectangle.setTranslateX(squareSize.get() * finalJ);
+                // Клетка занимает единицу в координатах доски, до пикселей её масштабирует родитель.
+                final Rectangle rectangle = new Rectangle(1, 1);
+                rectangle.setTranslateY(i);
+                rectangle.setTranslateX(j);
 
                 if (matrix[i][j] == 1) {
-                    rectangle.setEffect(lighting);
-                    rectangle.setFill(tetrominoDefinition.color);
-                    rectangle.setFill(paint);
-                    rectangle.setArcHeight(7);//закругление фигуры
-                    rectangle.setArcWidth(7);
+                    // Клетка с освещением и закругленными углами берется из готовых изображений.
+                    rectangle.setFill(sprite(squareSize.get()));
                 } else {
                     rectangle.setOpacity(0);
                 }
@@ -106,9 +43,7 @@ final class Tetromino extends Group implements Cloneable {
         //setCacheHint(CacheHint.SPEED);
         //setCache(true);
     }
-    public static Tetromino random(ReadOnlyDoubleProperty squareSize) {
-        TetrominoDefinition tetrominoDefinition = TETROMINO_DEFINITIONS[RANDOM.nextInt(7)];
-
+    public static Tetromino create(TetrominoDefinition tetrominoDefinition, ReadOnlyDoubleProperty squareSize) {
         return new Tetromino(tetrominoDefinition, squareSize);
     }
 
@@ -117,30 +52,41 @@ final class Tetromino extends Group implements Cloneable {
         return new Tetromino(tetrominoDefinition, squareSize);
     }
 
-    public Paint getFill() {
-        return paint;
+    public TetrominoDefinition getDefinition() {
+        return tetrominoDefinition;
     }
 
-    public Lighting getLighting() {
-        return lighting;
+    //Цвет фигуры с номером type.
+    static Color getColor(int type) {
+        return COLORS[type];
     }
 
-    public int[][] getMatrix() {
-        return matrix;
+    public Paint getFill() {
+        return paint;
     }
 
-    public void setMatrix(int[][] matrix) {
-        this.matrix = matrix;
+    //Заливка клетки этой фигуры для текущего состояния освещения.
+    private Paint sprite(double size) {
+        return size > 0 ? BlockSprites.shared().getPattern(tetrominoDefinition.getType(), lightRotation, size) : paint;
     }
 
-    private static class TetrominoDefinition {
-        private final Color color;
-
-        private final int[][] matrix;
+    //Выбирает освещение клеток для узла, повернутого на rotation * 90 градусов,
+    //чтобы свет на экране падал с той же стороны, что и на зафиксированные клетки.
+    public void setLightRotation(int rotation) {
+        if (lightRotation == rotation) {
+            return;
+        }
+        lightRotation = rotation;
+        refreshSprites();
+    }
 
-        private TetrominoDefinition(int[][] matrix, Color color) {
-            this.color = color;
-            this.matrix = matrix;
+    //Заново выбирает изображения клеток, например после изменения размера клетки.
+    public void refreshSprites() {
+        Paint fill = sprite(squareSize.get());
+        for (Node node : getChildren()) {
+            if (node.getOpacity() != 0) {
+                ((Rectangle) node).setFill(fill);
+            }
         }
     }
 }
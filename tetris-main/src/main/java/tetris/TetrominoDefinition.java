@@ -0,0 +1,171 @@
+package tetris;
+
+import java.util.Arrays;
+
+//Определение фигуры без JavaFX: четыре состояния поворота и таблица смещений (wall kick).
+//Все состояния вычисляются один раз при загрузке класса, поэтому поворот - это смена индекса
+//без выделения памяти. Состояния поворота нумеруются по часовой стрелке: 0 - начальное, 1 - R, 2, 3 - L.
+
+final class TetrominoDefinition {
+    //Смещения SRS для фигур J, L, S, T, Z в координатах доски (y направлен вниз).
+    //Индекс: from * 2 + (0 - по часовой стрелке, 1 - против), значения - пары dx, dy.
+    private static final int[][] JLSTZ_KICKS = kicks(new int[][]{
+            {0, 0, -1, 0, -1, 1, 0, -2, -1, -2},   // 0 -> R
+            {0, 0, 1, 0, 1, 1, 0, -2, 1, -2},      // 0 -> L
+            {0, 0, 1, 0, 1, -1, 0, 2, 1, 2},       // R -> 2
+            {0, 0, 1, 0, 1, -1, 0, 2, 1, 2},       // R -> 0
+            {0, 0, 1, 0, 1, 1, 0, -2, 1, -2},      // 2 -> L
+            {0, 0, -1, 0, -1, 1, 0, -2, -1, -2},   // 2 -> R
+            {0, 0, -1, 0, -1, -1, 0, 2, -1, 2},    // L -> 0
+            {0, 0, -1, 0, -1, -1, 0, 2, -1, 2}     // L -> 2
+    });
+    //Смещения SRS для фигуры I.
+    private static final int[][] I_KICKS = kicks(new int[][]{
+            {0, 0, -2, 0, 1, 0, -2, -1, 1, 2},     // 0 -> R
+            {0, 0, -1, 0, 2, 0, -1, 2, 2, -1},     // 0 -> L
+            {0, 0, -1, 0, 2, 0, -1, 2, 2, -1},     // R -> 2
+            {0, 0, 2, 0, -1, 0, 2, 1, -1, -2},     // R -> 0
+            {0, 0, 2, 0, -1, 0, 2, 1, -1, -2},     // 2 -> L
+            {0, 0, 1, 0, -2, 0, 1, -2, -2, 1},     // 2 -> R
+            {0, 0, 1, 0, -2, 0, 1, -2, -2, 1},     // L -> 0
+            {0, 0, -2, 0, 1, 0, -2, -1, 1, 2}      // L -> 2
+    });
+    //Фигура O при повороте не смещается.
+    private static final int[][] O_KICKS = kicks(new int[][]{
+            {0, 0}, {0, 0}, {0, 0}, {0, 0}, {0, 0}, {0, 0}, {0, 0}, {0, 0}
+    });
+
+    static final TetrominoDefinition I = new TetrominoDefinition(0, new int[][]{
+            {0, 0, 0, 0},
+            {1, 1, 1, 1},
+            {0, 0, 0, 0},
+            {0, 0, 0, 0}
+    }, I_KICKS);
+    static final TetrominoDefinition J = new TetrominoDefinition(1, new int[][]{
+            {1, 0, 0},
+            {1, 1, 1},
+            {0, 0, 0}
+    }, JLSTZ_KICKS);
+    static final TetrominoDefinition L = new TetrominoDefinition(2, new int[][]{
+            {0, 0, 1},
+            {1, 1, 1},
+            {0, 0, 0}
+    }, JLSTZ_KICKS);
+    static final TetrominoDefinition O = new TetrominoDefinition(3, new int[][]{
+            {1, 1},
+            {1, 1}
+    }, O_KICKS);
+    static final TetrominoDefinition S = new TetrominoDefinition(4, new int[][]{
+            {0, 1, 1},
+            {1, 1, 0},
+            {0, 0, 0}
+    }, JLSTZ_KICKS);
+    static final TetrominoDefinition T = new TetrominoDefinition(5, new int[][]{
+            {0, 1, 0},
+            {1, 1, 1},
+            {0, 0, 0}
+    }, JLSTZ_KICKS);
+    static final TetrominoDefinition Z = new TetrominoDefinition(6, new int[][]{
+            {1, 1, 0},
+            {0, 1, 1},
+            {0, 0, 0}
+    }, JLSTZ_KICKS);
+    //Все фигуры по номеру.
+    private static final TetrominoDefinition[] DEFINITIONS = new TetrominoDefinition[]{I, J, L, O, S, T, Z};
+
+    //Номер фигуры.
+    private final int type;
+    //Матрицы четырех состояний поворота.
+    private final int[][][] rotations = new int[4][][];
+    //Маски строк для каждого состояния поворота: бит j установлен, если занят столбец j.
+    private final int[][] rowMasks = new int[4][];
+    //Для каждого состояния поворота и столбца матрицы - индекс нижней занятой строки (-1, если столбец пуст).
+    private final int[][] columnBottoms = new int[4][];
+    //Таблица смещений при повороте.
+    private final int[][] kicks;
+
+    private TetrominoDefinition(int type, int[][] matrix, int[][] kicks) {
+        this.type = type;
+        this.kicks = kicks;
+        rotations[0] = matrix;
+        for (int r = 1; r < 4; r++) {
+            rotations[r] = rotateRight(rotations[r - 1]);
+        }
+        for (int r = 0; r < 4; r++) {
+            rowMasks[r] = new int[matrix.length];
+            columnBottoms[r] = new int[matrix.length];
+            Arrays.fill(columnBottoms[r], -1);
+            for (int i = 0; i < matrix.length; i++) {
+                for (int j = 0; j < matrix.length; j++) {
+                    if (rotations[r][i][j] == 1) {
+                        rowMasks[r][i] |= 1 << j;
+                        columnBottoms[r][j] = i;
+                    }
+                }
+            }
+        }
+    }
+
+    //Поворачивает матрицу по часовой стрелке.
+    private static int[][] rotateRight(int[][] matrix) {
+        int[][] newMatrix = new int[matrix.length][matrix.length];
+        for (int i = 0; i < matrix.length; i++) {
+            for (int j = 0; j < matrix[i].length; j++) {
+                newMatrix[j][matrix.length - 1 - i] = matrix[i][j];
+            }
+        }
+        return newMatrix;
+    }
+
+    //Переводит таблицу SRS (y направлен вверх) в координаты доски (y направлен вниз).
+    private static int[][] kicks(int[][] table) {
+        for (int[] row : table) {
+            for (int k = 1; k < row.length; k += 2) {
+                row[k] = -row[k];
+            }
+        }
+        return table;
+    }
+
+    //Возвращает фигуру по номеру.
+    public static TetrominoDefinition get(int type) {
+        return DEFINITIONS[type];
+    }
+
+    //Количество различных фигур.
+    public static int count() {
+        return DEFINITIONS.length;
+    }
+
+    public int getType() {
+        return type;
+    }
+
+    //Размер квадратной матрицы фигуры.
+    public int size() {
+        return rotations[0].length;
+    }
+
+    public int[][] getMatrix(int rotation) {
+        return rotations[rotation & 3];
+    }
+
+    public int[] getRowMasks(int rotation) {
+        return rowMasks[rotation & 3];
+    }
+
+    public int[] getColumnBottoms(int rotation) {
+        return columnBottoms[rotation & 3];
+    }
+
+    /**
+     * Возвращает смещения, которые перебираются по порядку при повороте.
+     *
+     * @param rotation  текущее состояние поворота.
+     * @param clockwise true, если поворот по часовой стрелке.
+     * @return пары dx, dy.
+     */
+    public int[] getKicks(int rotation, boolean clockwise) {
+        return kicks[(rotation & 3) * 2 + (clockwise ? 0 : 1)];
+    }
+}
@@ -0,0 +1,505 @@
+package tetris;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+//Много досок, которые делают ход одновременно, для обучения агентов без JavaFX.
+//Состояние всех досок лежит в массивах примитивов (структура массивов): строки стопки - битовые маски
+//long (бит j - столбец j, поэтому ширина доски не больше 64), фигура, поворот, x, y, счет и т.д. - по элементу на доску.
+//step() применяет по одному действию к каждой доске. Действия - те же, что у Board: move, rotate,
+//moveDownFast (здесь одна строка вниз) и dropDown. После действия каждые gravity шагов фигура опускается
+//на строку, фигура, которой некуда опускаться, сразу фиксируется. Игра заканчивается по правилам Simulation:
+//фигура фиксируется в верхней строке или новой фигуре некуда появиться. Закончившаяся игра сразу начинается
+//заново со следующим seed, а в getDones() доска отмечается. Наблюдения всех досок пишутся в один массив,
+//который используется снова при каждом шаге, поэтому step() не выделяет память.
+//Доски можно разделить между потоками: рабочие потоки ждут шага, сначала крутясь, затем засыпая.
+
+final class VectorEnvironment implements AutoCloseable {
+    //Действия.
+    static final int NOOP = 0;
+    static final int MOVE_LEFT = 1;
+    static final int MOVE_RIGHT = 2;
+    static final int ROTATE_LEFT = 3;
+    static final int ROTATE_RIGHT = 4;
+    static final int MOVE_DOWN_FAST = 5;
+    static final int DROP_DOWN = 6;
+    static final int ACTION_COUNT = 7;
+    //Клетки наблюдения.
+    static final byte EMPTY = 0;
+    static final byte STACK = 1;
+    static final byte PIECE = 2;
+    //После клеток в наблюдении доски: фигура, поворот, x, y и следующая фигура.
+    static final int EXTRA_OBSERVATIONS = 5;
+    //Сколько раз рабочий поток проверяет, не начался ли шаг, прежде чем заснуть.
+    private static final int SPINS = 1 << 12;
+    private static final TetrominoDefinition[] DEFINITIONS = new TetrominoDefinition[TetrominoDefinition.count()];
+
+    static {
+        for (int type = 0; type < DEFINITIONS.length; type++) {
+            DEFINITIONS[type] = TetrominoDefinition.get(type);
+        }
+    }
+
+    private final int boards;
+    private final int width, height;
+    private final long fullRow;
+    private final int gravity;
+    private final long seed;
+    private final int observationSize;
+
+    //Состояние досок: строки доски i - rows[i * height .. (i + 1) * height).
+    private final long[] rows;
+    private final int[] piece;
+    private final int[] next;
+    private final int[] rotation;
+    private final int[] x;
+    private final int[] y;
+    private final int[] gravityCounter;
+    private final int[] score;
+    private final int[] lines;
+    //Номер игры доски, от него зависит seed.
+    private final int[] episode;
+    private final PieceGenerator[] generators;
+    //Результаты шага.
+    private final byte[] observations;
+    private final int[] rewards;
+    private final byte[] dones;
+
+    //Рабочие потоки: поток k обрабатывает доски [bounds[k + 1], bounds[k + 2]), вызывающий - [0, bounds[1]).
+    private final Thread[] workers;
+    private final int[] bounds;
+    private final AtomicInteger remaining = new AtomicInteger();
+    //Номер шага: рабочие начинают шаг, когда он меняется. Действия передаются через запись до его увеличения.
+    private volatile int generation;
+    private int[] actions;
+    private volatile Thread caller;
+    private volatile boolean callerSleeping;
+    private volatile boolean closed;
+
+    /**
+     * @param boards  количество досок.
+     * @param width   ширина доски, не больше 64: строка доски - одно слово long.
+     * @param height  высота доски вместе со скрытыми строками.
+     * @param gravity через сколько шагов фигура опускается на строку.
+     * @param seed    доска i в игре e получает seed + e * boards + i.
+     * @param threads количество потоков, между которыми делятся доски, вместе с вызывающим.
+     */
+    VectorEnvironment(int boards, int width, int height, PieceGenerator.Mode mode, int gravity, long seed, int threads) {
+        if (width < 4 || width > Long.SIZE) {
+            throw new IllegalArgumentException("Board width must be between 4 and " + Long.SIZE + ": " + width);
+        }
+        this.boards = boards;
+        this.width = width;
+        this.height = height;
+        this.fullRow = width == Long.SIZE ? -1L : (1L << width) - 1;
+        this.gravity = Math.max(1, gravity);
+        this.seed = seed;
+        this.observationSize = width * height + EXTRA_OBSERVATIONS;
+        rows = new long[boards * height];
+        piece = new int[boards];
+        next = new int[boards];
+        rotation = new int[boards];
+        x = new int[boards];
+        y = new int[boards];
+        gravityCounter = new int[boards];
+        score = new int[boards];
+        lines = new int[boards];
+        episode = new int[boards];
+        generators = new PieceGenerator[boards];
+        for (int i = 0; i < boards; i++) {
+            generators[i] = new PieceGenerator(mode, seed + i);
+        }
+        observations = new byte[boards * observationSize];
+        rewards = new int[boards];
+        dones = new byte[boards];
+
+        threads = Math.max(1, Math.min(threads, boards));
+        bounds = new int[threads + 1];
+        for (int k = 0; k <= threads; k++) {
+            bounds[k] = (int) ((long) boards * k / threads);
+        }
+        workers = new Thread[threads - 1];
+        for (int k = 0; k < workers.length; k++) {
+            final int from = bounds[k + 1], to = bounds[k + 2];
+            workers[k] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    work(from, to);
+                }
+            }, "vector-environment-" + (k + 1));
+            workers[k].setDaemon(true);
+            workers[k].start();
+        }
+        reset();
+    }
+
+    //Начинает на всех досках новые игры с первыми seed.
+    public void reset() {
+        Arrays.fill(rows, 0L);
+        Arrays.fill(episode, 0);
+        for (int i = 0; i < boards; i++) {
+            startGame(i);
+            observe(i);
+        }
+        Arrays.fill(rewards, 0);
+        Arrays.fill(dones, (byte) 0);
+    }
+
+    /**
+     * Делает один шаг на всех досках. После возврата результаты лежат в getObservations(),
+     * getRewards() и getDones().
+     *
+     * @param actions действие для каждой доски (NOOP .. DROP_DOWN).
+     */
+    public void step(int[] actions) {
+        // Рабочие потоки после close() завершены, и шаг ждал бы их вечно.
+        if (closed) {
+            throw new IllegalStateException("Environment is closed");
+        }
+        if (actions.length < boards) {
+            throw new IllegalArgumentException("Expected " + boards + " actions");
+        }
+        if (workers.length == 0) {
+            stepRange(0, boards, actions);
+            return;
+        }
+        this.actions = actions;
+        caller = Thread.currentThread();
+        remaining.set(workers.length);
+        generation++;
+        for (Thread worker : workers) {
+            LockSupport.unpark(worker);
+        }
+        stepRange(bounds[0], bounds[1], actions);
+        for (int spins = 0; remaining.get() != 0; spins++) {
+            if (spins < SPINS) {
+                Thread.onSpinWait();
+            } else {
+                callerSleeping = true;
+                if (remaining.get() != 0) {
+                    LockSupport.parkNanos(this, 1_000_000L);
+                }
+                callerSleeping = false;
+            }
+        }
+    }
+
+    //Цикл рабочего потока.
+    private void work(int from, int to) {
+        int seen = 0;
+        while (true) {
+            for (int spins = 0; generation == seen; spins++) {
+                if (closed) {
+                    return;
+                }
+                if (spins < SPINS) {
+                    Thread.onSpinWait();
+                } else {
+                    // Время сна ограничено на случай пропущенного пробуждения.
+                    LockSupport.parkNanos(this, 1_000_000L);
+                }
+            }
+            seen = generation;
+            stepRange(from, to, actions);
+            if (remaining.decrementAndGet() == 0 && callerSleeping) {
+                LockSupport.unpark(caller);
+            }
+        }
+    }
+
+    private void stepRange(int from, int to, int[] actions) {
+        for (int i = from; i < to; i++) {
+            rewards[i] = 0;
+            dones[i] = 0;
+            step(i, actions[i]);
+            observe(i);
+        }
+    }
+
+    //Действие и падение фигуры на доске i.
+    private void step(int i, int action) {
+        switch (action) {
+            case MOVE_LEFT:
+                tryMove(i, -1);
+                break;
+            case MOVE_RIGHT:
+                tryMove(i, 1);
+                break;
+            case ROTATE_LEFT:
+                tryRotate(i, false);
+                break;
+            case ROTATE_RIGHT:
+                tryRotate(i, true);
+                break;
+            case MOVE_DOWN_FAST:
+                gravityCounter[i] = 0;
+                if (!fits(i, piece[i], rotation[i], x[i], y[i] + 1)) {
+                    lock(i);
+                    return;
+                }
+                y[i]++;
+                break;
+            case DROP_DOWN:
+                while (fits(i, piece[i], rotation[i], x[i], y[i] + 1)) {
+                    y[i]++;
+                }
+                lock(i);
+                return;
+            default:
+        }
+        if (++gravityCounter[i] >= gravity) {
+            gravityCounter[i] = 0;
+            if (fits(i, piece[i], rotation[i], x[i], y[i] + 1)) {
+                y[i]++;
+            } else {
+                lock(i);
+            }
+        }
+    }
+
+    //Проверяет, помещается ли фигура type на доске i. Правила те же, что у BoardEngine.intersects().
+    private boolean fits(int i, int type, int pieceRotation, int pieceX, int pieceY) {
+        int[] masks = DEFINITIONS[type].getRowMasks(pieceRotation);
+        int base = i * height;
+        for (int r = 0; r < masks.length; r++) {
+            int mask = masks[r];
+            if (mask == 0) {
+                continue;
+            }
+            int row = pieceY + r;
+            if (row < 0 || row >= height) {
+                return false;
+            }
+            if (pieceX + Integer.numberOfTrailingZeros(mask) < 0
+                    || pieceX + 31 - Integer.numberOfLeadingZeros(mask) >= width) {
+                return false;
+            }
+            if ((rows[base + row] & shift(mask, pieceX)) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //Маска строки фигуры, сдвинутая в столбец pieceX.
+    private static long shift(int mask, int pieceX) {
+        long bits = mask & 0xFFFFFFFFL;
+        return pieceX >= 0 ? bits << pieceX : bits >>> -pieceX;
+    }
+
+    private void tryMove(int i, int dx) {
+        if (fits(i, piece[i], rotation[i], x[i] + dx, y[i])) {
+            x[i] += dx;
+        }
+    }
+
+    //Поворот со смещениями из таблицы фигуры, как BoardEngine.tryRotate().
+    private void tryRotate(int i, boolean clockwise) {
+        int target = (rotation[i] + (clockwise ? 1 : 3)) & 3;
+        int[] kicks = DEFINITIONS[piece[i]].getKicks(rotation[i], clockwise);
+        for (int k = 0; k < kicks.length; k += 2) {
+            if (fits(i, piece[i], target, x[i] + kicks[k], y[i] + kicks[k + 1])) {
+                rotation[i] = target;
+                x[i] += kicks[k];
+                y[i] += kicks[k + 1];
+                return;
+            }
+        }
+    }
+
+    //Фиксирует фигуру, удаляет заполненные строки и выпускает следующую фигуру.
+    private void lock(int i) {
+        // Как в Simulation.land(): фигура, которая не сдвинулась из верхней строки, заканчивает игру.
+        if (y[i] == 0) {
+            restartGame(i);
+            return;
+        }
+        TetrominoDefinition definition = DEFINITIONS[piece[i]];
+        int[] masks = definition.getRowMasks(rotation[i]);
+        int base = i * height;
+        for (int r = 0; r < masks.length; r++) {
+            if (masks[r] != 0) {
+                rows[base + y[i] + r] |= shift(masks[r], x[i]);
+            }
+        }
+        // Заполненные строки могут быть только среди строк фигуры. Строки над ними сдвигаются вниз.
+        int bottom = Math.min(height, y[i] + definition.size()) - 1;
+        int write = bottom;
+        int cleared = 0;
+        for (int read = bottom; read >= 0; read--) {
+            long value = rows[base + read];
+            if (read >= y[i] && value == fullRow) {
+                cleared++;
+                continue;
+            }
+            rows[base + write--] = value;
+        }
+        while (write >= 0) {
+            rows[base + write--] = 0L;
+        }
+        if (cleared > 0) {
+            int points = ScoreManager.points(cleared);
+            rewards[i] += points;
+            score[i] += points;
+            lines[i] += cleared;
+        }
+        spawn(i);
+    }
+
+    //Выпускает следующую фигуру, как BoardEngine.spawn(). Как в Simulation.spawn(), игра окончена,
+    //если фигуре нет места или некуда опуститься.
+    private void spawn(int i) {
+        piece[i] = next[i];
+        next[i] = generators[i].next();
+        rotation[i] = 0;
+        x[i] = (width - DEFINITIONS[piece[i]].size()) / 2;
+        y[i] = 0;
+        gravityCounter[i] = 0;
+        if (!fits(i, piece[i], 0, x[i], 0) || !fits(i, piece[i], 0, x[i], 1)) {
+            restartGame(i);
+        }
+    }
+
+    //Отмечает конец игры доски i и сразу начинает следующую.
+    private void restartGame(int i) {
+        dones[i] = 1;
+        episode[i]++;
+        Arrays.fill(rows, i * height, (i + 1) * height, 0L);
+        startGame(i);
+    }
+
+    private void startGame(int i) {
+        generators[i].reset(seed + (long) episode[i] * boards + i);
+        score[i] = 0;
+        lines[i] = 0;
+        next[i] = generators[i].next();
+        spawn(i);
+    }
+
+    //Пишет наблюдение доски i: клетки построчно, затем фигура, поворот, x, y и следующая фигура.
+    private void observe(int i) {
+        int offset = i * observationSize;
+        int base = i * height;
+        for (int row = 0; row < height; row++) {
+            long value = rows[base + row];
+            for (int column = 0; column < width; column++) {
+                observations[offset + row * width + column] = (value & (1L << column)) != 0 ? STACK : EMPTY;
+            }
+        }
+        int[] masks = DEFINITIONS[piece[i]].getRowMasks(rotation[i]);
+        for (int r = 0; r < masks.length; r++) {
+            for (int m = masks[r]; m != 0; m &= m - 1) {
+                int column = x[i] + Integer.numberOfTrailingZeros(m);
+                observations[offset + (y[i] + r) * width + column] = PIECE;
+            }
+        }
+        int extra = offset + width * height;
+        observations[extra] = (byte) piece[i];
+        observations[extra + 1] = (byte) rotation[i];
+        observations[extra + 2] = (byte) x[i];
+        observations[extra + 3] = (byte) y[i];
+        observations[extra + 4] = (byte) next[i];
+    }
+
+    //Наблюдения всех досок подряд, по getObservationSize() байт на доску. Массив перезаписывается каждым шагом.
+    public byte[] getObservations() {
+        return observations;
+    }
+
+    public int getObservationSize() {
+        return observationSize;
+    }
+
+    //Очки, набранные каждой доской за последний шаг.
+    public int[] getRewards() {
+        return rewards;
+    }
+
+    //1 - игра доски закончилась на последнем шаге, и наблюдение уже показывает новую игру.
+    public byte[] getDones() {
+        return dones;
+    }
+
+    //Счет и удаленные строки текущей игры каждой доски.
+    public int[] getScores() {
+        return score;
+    }
+
+    public int[] getLines() {
+        return lines;
+    }
+
+    //Сколько игр закончила каждая доска.
+    public int[] getEpisodes() {
+        return episode;
+    }
+
+    public int getBoards() {
+        return boards;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        for (Thread worker : workers) {
+            LockSupport.unpark(worker);
+        }
+    }
+
+    /**
+     * Замер скорости со случайными действиями. Аргументы в виде --имя=значение: boards, threads, steps,
+     * width, height, gravity, mode, seed. Печатает шаги в секунду и память, выделенную вызывающим потоком за шаг.
+     */
+    public static void main(String[] args) {
+        Map<String, String> options = BatchRunner.parseOptions("VectorEnvironment", args);
+        int boards = Integer.parseInt(options.getOrDefault("boards", "1024"));
+        int threads = Integer.parseInt(options.getOrDefault("threads", String.valueOf(Runtime.getRuntime().availableProcessors())));
+        int steps = Integer.parseInt(options.getOrDefault("steps", "10000"));
+        int width = Integer.parseInt(options.getOrDefault("width", "10"));
+        int height = Integer.parseInt(options.getOrDefault("height", "20")) + Board.HIDDEN_ROWS;
+        int gravity = Integer.parseInt(options.getOrDefault("gravity", "1"));
+        PieceGenerator.Mode mode = PieceGenerator.Mode.valueOf(options.getOrDefault("mode", "BAG").toUpperCase());
+        long seed = Long.parseLong(options.getOrDefault("seed", "1"));
+        java.lang.management.ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        com.sun.management.ThreadMXBean allocations = threadBean instanceof com.sun.management.ThreadMXBean
+                ? (com.sun.management.ThreadMXBean) threadBean : null;
+        try (VectorEnvironment environment = new VectorEnvironment(boards, width, height, mode, gravity, seed, threads)) {
+            int[] actions = new int[boards];
+            long random = seed;
+            long lines = 0, games = 0;
+            // Прогрев, чтобы замер не включал компиляцию.
+            for (int s = 0; s < Math.min(steps, 1000); s++) {
+                environment.step(actions);
+            }
+            long allocatedBefore = allocations != null ? allocations.getThreadAllocatedBytes(Thread.currentThread().getId()) : 0;
+            long start = System.nanoTime();
+            for (int s = 0; s < steps; s++) {
+                for (int i = 0; i < boards; i++) {
+                    random ^= random << 13;
+                    random ^= random >>> 7;
+                    random ^= random << 17;
+                    actions[i] = (int) ((random >>> 33) % ACTION_COUNT);
+                }
+                environment.step(actions);
+                for (int i = 0; i < boards; i++) {
+                    games += environment.dones[i];
+                }
+            }
+            long elapsed = System.nanoTime() - start;
+            long allocated = allocations != null
+                    ? allocations.getThreadAllocatedBytes(Thread.currentThread().getId()) - allocatedBefore : -1;
+            for (int i = 0; i < boards; i++) {
+                lines += environment.lines[i];
+            }
+            System.out.printf("%d boards %dx%d, %d threads, %d steps: %.3f s%n", boards, width, height - Board.HIDDEN_ROWS,
+                    environment.workers.length + 1, steps, elapsed / 1e9);
+            System.out.printf("%.0f steps/s, %.0f board steps/s, %d games finished, %d lines in current games%n",
+                    steps * 1e9 / elapsed, (double) steps * boards * 1e9 / elapsed, games, lines);
+            System.out.printf("allocated by the calling thread: %d bytes (%.2f per step)%n", allocated,
+                    (double) allocated / steps);
+        }
+    }
+}
@@ -0,0 +1,312 @@
+package tetris;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+//Подбор весов оценки PlacementBot эволюцией без JavaFX.
+//Каждое поколение - набор векторов весов. Каждый вектор играет одни и те же игры (seed зависит от поколения
+//и номера игры), приспособленность - среднее количество строк или очков за игру. Все игры поколения
+//распределяются по пулу потоков: у каждой игры свои BoardEngine, Simulation и генератор фигур,
+//а результат пишется в свою ячейку, поэтому общих изменяемых данных у потоков нет.
+//Лучшая четверть переходит в следующее поколение, остальные получаются скрещиванием и мутацией.
+//После каждого поколения популяция пишется в файл, и прерванный подбор продолжается с него.
+//Пример: java -cp tetris.jar tetris.WeightTuner --population=32 --games=100 --checkpoint=weights.txt
+
+final class WeightTuner {
+    //Параметры подбора.
+    private final int population;
+    private final int generations;
+    private final int games;
+    private final int threads;
+    private final long seed;
+    private final int width, height, previews;
+    private final PieceGenerator.Mode mode;
+    private final int lookahead;
+    //Игра прекращается после этого количества фигур, даже если она не окончена.
+    private final int maxPieces;
+    //Приспособленность: lines - строки, score - очки, как в ScoreManager.
+    private final boolean score;
+    //Доля вектора, которая мутирует, и величина мутации.
+    private final double mutationRate;
+    private final double mutationSize;
+    private final Path checkpoint;
+
+    //Текущее поколение: номер, векторы весов и их приспособленность (NaN - еще не оценен).
+    private int generation;
+    private double[][] weights;
+    private double[] fitness;
+
+    private WeightTuner(Map<String, String> options) {
+        population = Integer.parseInt(BatchRunner.option(options, "population", "32"));
+        generations = Integer.parseInt(BatchRunner.option(options, "generations", "20"));
+        games = Integer.parseInt(BatchRunner.option(options, "games", "100"));
+        threads = Integer.parseInt(BatchRunner.option(options, "threads", String.valueOf(Runtime.getRuntime().availableProcessors())));
+        seed = Long.parseLong(BatchRunner.option(options, "seed", "1"));
+        width = Integer.parseInt(BatchRunner.option(options, "width", "10"));
+        height = Integer.parseInt(BatchRunner.option(options, "height", "20")) + Board.HIDDEN_ROWS;
+        previews = Integer.parseInt(BatchRunner.option(options, "previews", "1"));
+        mode = PieceGenerator.Mode.valueOf(BatchRunner.option(options, "mode", "BAG").toUpperCase());
+        lookahead = Integer.parseInt(BatchRunner.option(options, "lookahead", "0"));
+        maxPieces = Integer.parseInt(BatchRunner.option(options, "max-pieces", "500"));
+        score = "score".equals(BatchRunner.option(options, "fitness", "lines"));
+        mutationRate = Double.parseDouble(BatchRunner.option(options, "mutation-rate", "0.25"));
+        mutationSize = Double.parseDouble(BatchRunner.option(options, "mutation-size", "0.2"));
+        checkpoint = Paths.get(BatchRunner.option(options, "checkpoint", "weights.txt"));
+    }
+
+    //Играет одну игру с весами candidate и возвращает строки или очки.
+    private long play(double[] candidate, long gameSeed) {
+        // Без ограничения времени ход зависит только от доски, поэтому оценка повторяется на любой машине.
+        // Игры и так занимают все потоки, поэтому ходы оцениваются в потоке игры.
+        PlacementBot bot = new PlacementBot(candidate, lookahead, 0, null);
+        BatchRunner.Result result = BatchRunner.play(width, height, new PieceQueue(new PieceGenerator(mode, gameSeed), previews),
+                bot, maxPieces, null);
+        return score ? result.score : result.lines;
+    }
+
+    //Случайная первая популяция; первый вектор - веса по умолчанию.
+    private void initialize() {
+        Random random = random();
+        weights = new double[population][];
+        fitness = new double[population];
+        weights[0] = normalize(PlacementBot.DEFAULT_WEIGHTS.clone());
+        for (int i = 1; i < population; i++) {
+            double[] candidate = new double[PlacementBot.WEIGHT_COUNT];
+            for (int k = 0; k < candidate.length; k++) {
+                candidate[k] = random.nextDouble() * 2 - 1;
+            }
+            weights[i] = normalize(candidate);
+        }
+        Arrays.fill(fitness, Double.NaN);
+    }
+
+    //Генератор решений поколения. Зависит только от seed и номера поколения, поэтому продолжение из файла
+    //дает те же поколения, что и подбор без перерыва.
+    private Random random() {
+        return new Random(seed * 1_000_003L + generation);
+    }
+
+    //Оценивает векторы поколения, которые еще не оценены. Все игры всех векторов выполняются параллельно.
+    private long evaluate(ExecutorService executor) throws InterruptedException, ExecutionException {
+        final long[][] results = new long[population][];
+        List<Future<?>> futures = new ArrayList<>();
+        long started = 0;
+        for (int i = 0; i < population; i++) {
+            if (!Double.isNaN(fitness[i])) {
+                continue;
+            }
+            final long[] candidateResults = results[i] = new long[games];
+            final double[] candidate = weights[i];
+            for (int g = 0; g < games; g++) {
+                final int game = g;
+                // Все векторы поколения играют одни и те же игры.
+                final long gameSeed = seed + (long) generation * games + g;
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        candidateResults[game] = play(candidate, gameSeed);
+                        return null;
+                    }
+                }));
+                started++;
+            }
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        for (int i = 0; i < population; i++) {
+            if (results[i] != null) {
+                long sum = 0;
+                for (long result : results[i]) {
+                    sum += result;
+                }
+                fitness[i] = (double) sum / games;
+            }
+        }
+        return started;
+    }
+
+    //Следующее поколение: лучшая четверть без изменений, остальные - потомки двух родителей.
+    private void breed() {
+        Integer[] order = rank();
+        Random random = random();
+        int elite = Math.max(1, population / 4);
+        double[][] nextWeights = new double[population][];
+        double[] nextFitness = new double[population];
+        Arrays.fill(nextFitness, Double.NaN);
+        // Поколение играет новые игры, поэтому лучшие тоже оцениваются заново.
+        for (int i = 0; i < elite; i++) {
+            nextWeights[i] = weights[order[i]];
+        }
+        for (int i = elite; i < population; i++) {
+            int a = tournament(random), b = tournament(random);
+            // Потомок - среднее родителей, взвешенное по приспособленности.
+            double fa = Math.max(fitness[a], 0), fb = Math.max(fitness[b], 0);
+            double share = fa + fb == 0 ? 0.5 : fa / (fa + fb);
+            double[] child = new double[PlacementBot.WEIGHT_COUNT];
+            for (int k = 0; k < child.length; k++) {
+                child[k] = share * weights[a][k] + (1 - share) * weights[b][k];
+            }
+            if (random.nextDouble() < mutationRate) {
+                int k = random.nextInt(child.length);
+                child[k] += (random.nextDouble() * 2 - 1) * mutationSize;
+            }
+            nextWeights[i] = normalize(child);
+        }
+        weights = nextWeights;
+        fitness = nextFitness;
+        generation++;
+    }
+
+    //Лучший из десятой части популяции, выбранной случайно.
+    private int tournament(Random random) {
+        int best = -1;
+        for (int i = Math.max(2, population / 10); i > 0; i--) {
+            int candidate = random.nextInt(population);
+            if (best < 0 || fitness[candidate] > fitness[best]) {
+                best = candidate;
+            }
+        }
+        return best;
+    }
+
+    //Номера векторов по убыванию приспособленности.
+    private Integer[] rank() {
+        Integer[] order = new Integer[population];
+        for (int i = 0; i < population; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Double.compare(fitness[b], fitness[a]);
+            }
+        });
+        return order;
+    }
+
+    //Ход выбирается по сравнению оценок, поэтому длина вектора не важна: векторы приводятся к длине 1.
+    private static double[] normalize(double[] vector) {
+        double length = 0;
+        for (double value : vector) {
+            length += value * value;
+        }
+        length = Math.sqrt(length);
+        if (length > 0) {
+            for (int k = 0; k < vector.length; k++) {
+                vector[k] /= length;
+            }
+        }
+        return vector;
+    }
+
+    /**
+     * Пишет популяцию в файл: строка "generation N", затем по строке на вектор - веса и приспособленность
+     * (NaN - не оценен). Файл сначала пишется рядом и затем заменяет прежний, поэтому при сбое остается целый.
+     */
+    private void save() throws IOException {
+        Path temporary = checkpoint.resolveSibling(checkpoint.getFileName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+            writer.write("generation " + generation);
+            writer.newLine();
+            for (int i = 0; i < population; i++) {
+                writer.write(format(weights[i], true) + " " + fitness[i]);
+                writer.newLine();
+            }
+        }
+        Files.move(temporary, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    //Читает популяцию из файла. false, если файла нет.
+    private boolean load() throws IOException {
+        if (!Files.exists(checkpoint)) {
+            return false;
+        }
+        List<String> lines = Files.readAllLines(checkpoint, StandardCharsets.UTF_8);
+        if (lines.isEmpty() || !lines.get(0).startsWith("generation ") || lines.size() - 1 != population) {
+            throw new IOException("Checkpoint " + checkpoint + " does not match --population=" + population);
+        }
+        generation = Integer.parseInt(lines.get(0).substring("generation ".length()).trim());
+        weights = new double[population][];
+        fitness = new double[population];
+        for (int i = 0; i < population; i++) {
+            String[] values = lines.get(i + 1).trim().split("\\s+");
+            if (values.length != 2) {
+                throw new IOException("Malformed checkpoint line " + (i + 2));
+            }
+            weights[i] = PlacementBot.parseWeights(values[0]);
+            fitness[i] = Double.parseDouble(values[1]);
+        }
+        return true;
+    }
+
+    //Веса через запятую, как их принимают --weights и --bot-weights. exact - без округления, для файла популяции.
+    private static String format(double[] vector, boolean exact) {
+        StringBuilder builder = new StringBuilder();
+        for (int k = 0; k < vector.length; k++) {
+            builder.append(k == 0 ? "" : ",")
+                    .append(exact ? Double.toString(vector[k]) : String.format(Locale.ROOT, "%.6f", vector[k]));
+        }
+        return builder.toString();
+    }
+
+    private void run() throws IOException, InterruptedException, ExecutionException {
+        if (load()) {
+            System.out.printf("resuming from %s at generation %d%n", checkpoint, generation);
+        } else {
+            initialize();
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            while (generation < generations) {
+                long start = System.nanoTime();
+                long played = evaluate(executor);
+                double seconds = (System.nanoTime() - start) / 1e9;
+                save();
+                Integer[] order = rank();
+                double mean = 0;
+                for (double value : fitness) {
+                    mean += value / population;
+                }
+                System.out.printf(Locale.ROOT, "generation %d: best %.1f, mean %.1f, weights %s; %d games in %.2f s (%.1f games/s, %d threads)%n",
+                        generation, fitness[order[0]], mean, format(weights[order[0]], false), played, seconds,
+                        played / seconds, threads);
+                if (generation + 1 == generations) {
+                    break;
+                }
+                breed();
+                save();
+            }
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+    }
+
+    /**
+     * Аргументы в виде --имя=значение: population, generations, games (игр на вектор), threads, seed,
+     * width, height, previews, mode (RANDOM, BAG, HISTORY), lookahead, max-pieces, fitness (lines, score),
+     * mutation-rate, mutation-size, checkpoint (файл популяции, по умолчанию weights.txt).
+     */
+    public static void main(String[] args) throws IOException, InterruptedException, ExecutionException {
+        new WeightTuner(BatchRunner.parseOptions("WeightTuner", args)).run();
+    }
+}
@@ -0,0 +1,210 @@
+package tetris;
+
+import org.testng.annotations.Test;
+
+import java.util.Random;
+
+import static org.testng.Assert.assertEquals;
+
+//Проверка битовых операций BoardEngine на случайных досках против простой модели:
+//доска - двумерный массив цветов, фигура - матрица getMatrix(), без масок и поверхности стопки.
+
+public class BoardEngineTest {
+    //Ширина 70 проверяет строки из двух слов long и фигуры на границе слов.
+    private static final int[] WIDTHS = {10, 70};
+    //Не больше 31 строки, чтобы completeRows(0, HEIGHT) помещалась в маску int.
+    private static final int HEIGHT = 24;
+    private static final int BOARDS = 40;
+
+    //Заполняет доску и модель случайными клетками ниже случайной вершины, часть строк заполнена полностью.
+    private static byte[][] randomBoard(Random random, BoardEngine engine) {
+        int width = engine.getWidth();
+        int height = engine.getHeight();
+        byte[][] model = new byte[height][width];
+        int top = random.nextInt(height + 1);
+        double density = 0.2 + 0.7 * random.nextDouble();
+        for (int row = top; row < height; row++) {
+            boolean full = random.nextInt(4) == 0;
+            for (int column = 0; column < width; column++) {
+                if (full || random.nextDouble() < density) {
+                    model[row][column] = (byte) (1 + random.nextInt(TetrominoDefinition.count()));
+                }
+            }
+            engine.setRow(row, model[row]);
+        }
+        engine.updateSurface();
+        return model;
+    }
+
+    private static boolean naiveIntersects(byte[][] model, TetrominoDefinition definition, int rotation, int x, int y) {
+        int[][] matrix = definition.getMatrix(rotation);
+        for (int i = 0; i < matrix.length; i++) {
+            for (int j = 0; j < matrix[i].length; j++) {
+                if (matrix[i][j] == 0) {
+                    continue;
+                }
+                int column = x + j;
+                int row = y + i;
+                if (column < 0 || column >= model[0].length || row < 0 || row >= model.length || model[row][column] != 0) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    //Удаляет из модели заполненные строки диапазона [fromRow, fromRow + count), вышележащие строки сдвигаются вниз.
+    private static byte[][] naiveClear(byte[][] model, int fromRow, int count) {
+        int width = model[0].length;
+        byte[][] result = new byte[model.length][width];
+        int write = model.length - 1;
+        for (int row = model.length - 1; row >= 0; row--) {
+            boolean full = true;
+            for (int column = 0; column < width && full; column++) {
+                full = model[row][column] != 0;
+            }
+            if (full && row >= fromRow && row < fromRow + count) {
+                continue;
+            }
+            result[write--] = model[row].clone();
+        }
+        return result;
+    }
+
+    //Сравнивает клетки, маски, заполненность строк и поверхность стопки с моделью.
+    private static void assertMatches(BoardEngine engine, byte[][] model) {
+        int width = engine.getWidth();
+        int height = engine.getHeight();
+        int stackTop = height;
+        for (int row = height - 1; row >= 0; row--) {
+            int fill = 0;
+            for (int column = 0; column < width; column++) {
+                String cell = "cell " + column + "," + row;
+                assertEquals(engine.getCell(column, row), model[row][column], cell);
+                assertEquals(engine.isOccupied(column, row), model[row][column] != 0, cell);
+                fill += model[row][column] != 0 ? 1 : 0;
+            }
+            assertEquals(engine.getRowFill(row), fill, "row " + row);
+            assertEquals(engine.isRowComplete(row), fill == width, "row " + row);
+            if (fill > 0) {
+                stackTop = row;
+            }
+        }
+        assertEquals(engine.getStackTop(), stackTop, "stack top");
+        for (int column = 0; column < width; column++) {
+            int top = 0;
+            while (top < height && model[top][column] == 0) {
+                top++;
+            }
+            assertEquals(engine.getColumnTop(column), top, "column " + column);
+        }
+    }
+
+    @Test
+    public void intersectsMatchesNaiveModel() {
+        Random random = new Random(1);
+        for (int width : WIDTHS) {
+            for (int board = 0; board < BOARDS; board++) {
+                BoardEngine engine = new BoardEngine(width, HEIGHT);
+                byte[][] model = randomBoard(random, engine);
+                for (int type = 0; type < TetrominoDefinition.count(); type++) {
+                    TetrominoDefinition definition = TetrominoDefinition.get(type);
+                    for (int rotation = 0; rotation < 4; rotation++) {
+                        for (int x = -4; x <= width; x++) {
+                            for (int y = -4; y <= HEIGHT; y++) {
+                                assertEquals(engine.intersects(definition, rotation, x, y),
+                                        naiveIntersects(model, definition, rotation, x, y),
+                                        "type " + type + ", rotation " + rotation + " at " + x + "," + y);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void landingYMatchesNaiveDrop() {
+        Random random = new Random(2);
+        for (int width : WIDTHS) {
+            for (int board = 0; board < BOARDS; board++) {
+                BoardEngine engine = new BoardEngine(width, HEIGHT);
+                byte[][] model = randomBoard(random, engine);
+                for (int type = 0; type < TetrominoDefinition.count(); type++) {
+                    TetrominoDefinition definition = TetrominoDefinition.get(type);
+                    for (int rotation = 0; rotation < 4; rotation++) {
+                        for (int x = -3; x < width; x++) {
+                            for (int y = -3; y < HEIGHT; y++) {
+                                if (naiveIntersects(model, definition, rotation, x, y)) {
+                                    continue;
+                                }
+                                int landing = y;
+                                while (!naiveIntersects(model, definition, rotation, x, landing + 1)) {
+                                    landing++;
+                                }
+                                assertEquals(engine.landingY(definition, rotation, x, y), landing,
+                                        "type " + type + ", rotation " + rotation + " from " + x + "," + y);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void clearRowsMatchesNaiveModel() {
+        Random random = new Random(3);
+        for (int width : WIDTHS) {
+            for (int board = 0; board < BOARDS * 5; board++) {
+                BoardEngine engine = new BoardEngine(width, HEIGHT);
+                byte[][] model = randomBoard(random, engine);
+                // Как после фиксации фигуры: проверяются строки фигуры, иногда вся доска.
+                int fromRow = random.nextInt(HEIGHT);
+                int count = random.nextInt(8) == 0 ? HEIGHT - fromRow : 4;
+                int mask = engine.completeRows(fromRow, count);
+                byte[][] expected = naiveClear(model, fromRow, count);
+                int removed = 0;
+                for (int row = fromRow; row < Math.min(HEIGHT, fromRow + count); row++) {
+                    removed += engine.isRowComplete(row) ? 1 : 0;
+                }
+                assertEquals(Integer.bitCount(mask), removed);
+                assertEquals(engine.clearRows(mask, fromRow), removed);
+                assertMatches(engine, expected);
+            }
+        }
+    }
+
+    @Test
+    public void placeThenClearMatchesNaiveModel() {
+        Random random = new Random(4);
+        for (int width : WIDTHS) {
+            BoardEngine engine = new BoardEngine(width, HEIGHT);
+            byte[][] model = new byte[HEIGHT][width];
+            for (int piece = 0; piece < 2000; piece++) {
+                TetrominoDefinition definition = TetrominoDefinition.get(random.nextInt(TetrominoDefinition.count()));
+                int rotation = random.nextInt(4);
+                int x = random.nextInt(width) - 2;
+                if (naiveIntersects(model, definition, rotation, x, 0)) {
+                    engine.clear();
+                    model = new byte[HEIGHT][width];
+                    continue;
+                }
+                int y = engine.landingY(definition, rotation, x, 0);
+                engine.setPiece(definition, rotation, x, y);
+                int mask = engine.lock();
+                int[][] matrix = definition.getMatrix(rotation);
+                for (int i = 0; i < matrix.length; i++) {
+                    for (int j = 0; j < matrix[i].length; j++) {
+                        if (matrix[i][j] != 0) {
+                            model[y + i][x + j] = (byte) (definition.getType() + 1);
+                        }
+                    }
+                }
+                engine.clearRows(mask, y);
+                model = naiveClear(model, y, definition.size());
+                assertMatches(engine, model);
+            }
+        }
+    }
+}
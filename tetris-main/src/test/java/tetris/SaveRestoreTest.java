@@ -0,0 +1,182 @@
+package tetris;
+
+import org.testng.annotations.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+//Проверка save() -> restore(): восстановленное состояние совпадает с записанным
+//и дальше ведет себя так же, как исходное.
+
+public class SaveRestoreTest {
+    private static final int WIDTH = 10;
+    private static final int HEIGHT = 20 + Board.HIDDEN_ROWS;
+
+    //Слушатель, которому события не нужны.
+    private static final Simulation.Listener IGNORE = new Simulation.Listener() {
+        @Override
+        public void onSpawn(TetrominoDefinition piece) {
+        }
+
+        @Override
+        public void onStep(boolean softDrop) {
+        }
+
+        @Override
+        public void onLock(int completeRows) {
+        }
+
+        @Override
+        public void onGameOver() {
+        }
+    };
+
+    private static void assertSameEngine(BoardEngine actual, BoardEngine expected) {
+        byte[] actualCells = new byte[WIDTH * HEIGHT];
+        byte[] expectedCells = new byte[WIDTH * HEIGHT];
+        actual.copyCells(actualCells);
+        expected.copyCells(expectedCells);
+        assertTrue(Arrays.equals(actualCells, expectedCells), "cells");
+        for (int row = 0; row < HEIGHT; row++) {
+            assertEquals(actual.getRowFill(row), expected.getRowFill(row), "row " + row);
+            for (int column = 0; column < WIDTH; column++) {
+                assertEquals(actual.isOccupied(column, row), expected.isOccupied(column, row), "cell " + column + "," + row);
+            }
+        }
+        assertEquals(actual.getStackTop(), expected.getStackTop(), "stack top");
+        for (int column = 0; column < WIDTH; column++) {
+            assertEquals(actual.getColumnTop(column), expected.getColumnTop(column), "column " + column);
+        }
+        assertEquals(actual.getPiece(), expected.getPiece());
+        assertEquals(actual.getRotation(), expected.getRotation());
+        assertEquals(actual.getX(), expected.getX());
+        assertEquals(actual.getY(), expected.getY());
+    }
+
+    private static byte[] save(Simulation simulation) {
+        ByteBuffer buffer = ByteBuffer.allocate(simulation.getStateSize());
+        simulation.save(buffer);
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    //Ввод в такте tick зависит только от номера такта, поэтому две игры получают одинаковый ввод.
+    private static void input(Simulation simulation, long tick) {
+        Random random = new Random(tick);
+        switch (random.nextInt(12)) {
+            case 0:
+                simulation.move(-1);
+                break;
+            case 1:
+                simulation.move(1);
+                break;
+            case 2:
+                simulation.rotate(random.nextBoolean());
+                break;
+            case 3:
+                simulation.hardDrop();
+                break;
+            case 4:
+                simulation.setSoftDrop(random.nextBoolean());
+                break;
+            default:
+                break;
+        }
+    }
+
+    @Test
+    public void engineRoundTrip() {
+        Random random = new Random(5);
+        BoardEngine engine = new BoardEngine(WIDTH, HEIGHT);
+        // Восстановление поверх непустой доски другого состояния.
+        BoardEngine restored = new BoardEngine(WIDTH, HEIGHT);
+        ByteBuffer buffer = ByteBuffer.allocate(16 + WIDTH * HEIGHT);
+        for (int piece = 0; piece < 3000; piece++) {
+            TetrominoDefinition definition = TetrominoDefinition.get(random.nextInt(TetrominoDefinition.count()));
+            engine.spawn(definition);
+            if (!engine.fits(0, 0)) {
+                engine.clear();
+                continue;
+            }
+            for (int i = random.nextInt(4); i > 0; i--) {
+                engine.tryRotate(random.nextBoolean());
+            }
+            engine.tryMove(random.nextInt(9) - 4, 0);
+            engine.tryMove(0, random.nextInt(1 + engine.dropDistance()));
+
+            buffer.clear();
+            engine.save(buffer);
+            buffer.flip();
+            restored.restore(buffer);
+            assertFalse(buffer.hasRemaining());
+            assertSameEngine(restored, engine);
+
+            engine.tryMove(0, engine.dropDistance());
+            int y = engine.getY();
+            engine.clearRows(engine.lock(), y);
+            buffer.clear();
+            engine.save(buffer);
+            buffer.flip();
+            restored.restore(buffer);
+            assertSameEngine(restored, engine);
+            assertFalse(restored.hasPiece());
+        }
+    }
+
+    @Test
+    public void generatorRoundTrip() {
+        for (PieceGenerator.Mode mode : PieceGenerator.Mode.values()) {
+            PieceGenerator generator = new PieceGenerator(mode, 7);
+            for (int i = 0; i < 10; i++) {
+                generator.next();
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(64);
+            generator.save(buffer);
+            buffer.flip();
+            PieceGenerator restored = new PieceGenerator(mode, 8);
+            restored.next();
+            restored.restore(buffer);
+            for (int i = 0; i < 1000; i++) {
+                assertEquals(restored.next(), generator.next(), mode + ", piece " + i);
+            }
+        }
+    }
+
+    //Игра, продолженная из сохраненного состояния, идет такт в такт с исходной.
+    @Test
+    public void simulationRoundTrip() {
+        for (long seed = 1; seed <= 5; seed++) {
+            Simulation simulation = new Simulation(new BoardEngine(WIDTH, HEIGHT));
+            simulation.setListener(IGNORE);
+            simulation.start(new PieceQueue(new PieceGenerator(PieceGenerator.Mode.BAG, seed), 3));
+            for (int i = 0; i < 2000 && simulation.isRunning(); i++) {
+                input(simulation, simulation.getTick());
+                simulation.tick();
+            }
+            byte[] state = save(simulation);
+
+            Simulation resumed = new Simulation(new BoardEngine(WIDTH, HEIGHT));
+            resumed.setListener(IGNORE);
+            resumed.resume(new PieceQueue(new PieceGenerator(PieceGenerator.Mode.BAG, seed + 100), 3), ByteBuffer.wrap(state));
+            assertTrue(Arrays.equals(save(resumed), state), "seed " + seed);
+            assertSameEngine(resumed.getEngine(), simulation.getEngine());
+
+            for (int i = 0; i < 5000 && simulation.isRunning(); i++) {
+                input(simulation, simulation.getTick());
+                input(resumed, resumed.getTick());
+                simulation.tick();
+                resumed.tick();
+                assertEquals(resumed.getTick(), simulation.getTick());
+                assertEquals(resumed.isGameOver(), simulation.isGameOver());
+                assertSameEngine(resumed.getEngine(), simulation.getEngine());
+                for (int k = 0; k < 3; k++) {
+                    assertEquals(resumed.getPieceQueue().peek(k), simulation.getPieceQueue().peek(k));
+                }
+            }
+        }
+    }
+}
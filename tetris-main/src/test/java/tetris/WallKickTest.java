@@ -0,0 +1,151 @@
+package tetris;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+//Проверка поворота со смещениями (wall kick) по таблицам SRS.
+//Таблицы записаны отдельно от TetrominoDefinition в исходном виде SRS: по переходам, y направлен вверх.
+
+public class WallKickTest {
+    //Состояния поворота в обозначениях SRS.
+    private static final String[] STATES = {"0", "R", "2", "L"};
+    //Переход, затем пять смещений dx, dy.
+    private static final String[] JLSTZ_KICKS = {
+            "0>R", "0,0 -1,0 -1,+1 0,-2 -1,-2",
+            "R>0", "0,0 +1,0 +1,-1 0,+2 +1,+2",
+            "R>2", "0,0 +1,0 +1,-1 0,+2 +1,+2",
+            "2>R", "0,0 -1,0 -1,+1 0,-2 -1,-2",
+            "2>L", "0,0 +1,0 +1,+1 0,-2 +1,-2",
+            "L>2", "0,0 -1,0 -1,-1 0,+2 -1,+2",
+            "L>0", "0,0 -1,0 -1,-1 0,+2 -1,+2",
+            "0>L", "0,0 +1,0 +1,+1 0,-2 +1,-2"
+    };
+    private static final String[] I_KICKS = {
+            "0>R", "0,0 -2,0 +1,0 -2,-1 +1,+2",
+            "R>0", "0,0 +2,0 -1,0 +2,+1 -1,-2",
+            "R>2", "0,0 -1,0 +2,0 -1,+2 +2,-1",
+            "2>R", "0,0 +1,0 -2,0 +1,-2 -2,+1",
+            "2>L", "0,0 +2,0 -1,0 +2,+1 -1,-2",
+            "L>2", "0,0 -2,0 +1,0 -2,-1 +1,+2",
+            "L>0", "0,0 +1,0 -2,0 +1,-2 -2,+1",
+            "0>L", "0,0 -1,0 +2,0 -1,+2 +2,-1"
+    };
+    private static final int SIZE = 12;
+    //Положение фигуры до поворота, с запасом для смещений во все стороны.
+    private static final int X = 4, Y = 4;
+
+    //Смещения перехода from -> to в координатах доски (y направлен вниз).
+    private static int[][] kicks(String[] table, int from, int to) {
+        String transition = STATES[from] + ">" + STATES[to];
+        for (int i = 0; i < table.length; i += 2) {
+            if (table[i].equals(transition)) {
+                String[] pairs = table[i + 1].split(" ");
+                int[][] kicks = new int[pairs.length][];
+                for (int k = 0; k < pairs.length; k++) {
+                    String[] pair = pairs[k].split(",");
+                    kicks[k] = new int[]{Integer.parseInt(pair[0]), -Integer.parseInt(pair[1])};
+                }
+                return kicks;
+            }
+        }
+        throw new IllegalArgumentException(transition);
+    }
+
+    //Доска, на которой свободны только клетки фигуры в состоянии rotation в позиции (x, y).
+    private static BoardEngine onlyFree(TetrominoDefinition definition, int rotation, int x, int y) {
+        BoardEngine engine = new BoardEngine(SIZE, SIZE);
+        int[][] matrix = definition.getMatrix(rotation);
+        byte[] cells = new byte[SIZE];
+        for (int row = 0; row < SIZE; row++) {
+            for (int column = 0; column < SIZE; column++) {
+                int i = row - y;
+                int j = column - x;
+                boolean free = i >= 0 && i < matrix.length && j >= 0 && j < matrix.length && matrix[i][j] != 0;
+                cells[column] = (byte) (free ? 0 : 1);
+            }
+            engine.setRow(row, cells);
+        }
+        engine.updateSurface();
+        return engine;
+    }
+
+    //Для каждого перехода и каждого смещения k: смещения до k заблокированы, поворот выбирает смещение k.
+    private static void checkKicks(TetrominoDefinition definition, String[] table) {
+        for (int from = 0; from < 4; from++) {
+            for (boolean clockwise : new boolean[]{true, false}) {
+                int to = (from + (clockwise ? 1 : 3)) & 3;
+                int[][] kicks = kicks(table, from, to);
+                for (int k = 0; k < kicks.length; k++) {
+                    String test = "type " + definition.getType() + ", " + STATES[from] + ">" + STATES[to] + ", test " + (k + 1);
+                    BoardEngine engine = onlyFree(definition, to, X + kicks[k][0], Y + kicks[k][1]);
+                    engine.setPiece(definition, from, X, Y);
+                    assertTrue(engine.tryRotate(clockwise), test);
+                    assertEquals(engine.getRotation(), to, test);
+                    assertEquals(engine.getX(), X + kicks[k][0], test);
+                    assertEquals(engine.getY(), Y + kicks[k][1], test);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void jlstzKicks() {
+        for (TetrominoDefinition definition : new TetrominoDefinition[]{TetrominoDefinition.J, TetrominoDefinition.L,
+                TetrominoDefinition.S, TetrominoDefinition.T, TetrominoDefinition.Z}) {
+            checkKicks(definition, JLSTZ_KICKS);
+        }
+    }
+
+    @Test
+    public void iKicks() {
+        checkKicks(TetrominoDefinition.I, I_KICKS);
+    }
+
+    @Test
+    public void oRotatesInPlace() {
+        BoardEngine engine = new BoardEngine(10, 20);
+        engine.setPiece(TetrominoDefinition.O, 0, 0, 18);
+        for (int turn = 1; turn <= 4; turn++) {
+            assertTrue(engine.tryRotate(true));
+            assertEquals(engine.getRotation(), turn & 3);
+            assertEquals(engine.getX(), 0);
+            assertEquals(engine.getY(), 18);
+        }
+    }
+
+    //Вертикальная I у левой стены: на месте и на шаг левее она выходит за стену, третье смещение сдвигает её на 2 вправо.
+    @Test
+    public void iKicksOffLeftWall() {
+        BoardEngine engine = new BoardEngine(10, 20);
+        engine.setPiece(TetrominoDefinition.I, 1, -2, 5);
+        assertFalse(engine.intersects(TetrominoDefinition.I, 1, -2, 5));
+        assertTrue(engine.tryRotate(true));
+        assertEquals(engine.getRotation(), 2);
+        assertEquals(engine.getX(), 0);
+        assertEquals(engine.getY(), 5);
+    }
+
+    //Если ни одно смещение не подходит, фигура остается как была.
+    @Test
+    public void blockedRotationKeepsPiece() {
+        for (int type = 0; type < TetrominoDefinition.count(); type++) {
+            TetrominoDefinition definition = TetrominoDefinition.get(type);
+            if (definition == TetrominoDefinition.O) {
+                continue;
+            }
+            for (int from = 0; from < 4; from++) {
+                for (boolean clockwise : new boolean[]{true, false}) {
+                    BoardEngine engine = onlyFree(definition, from, X, Y);
+                    engine.setPiece(definition, from, X, Y);
+                    assertFalse(engine.tryRotate(clockwise), "type " + type + " from " + STATES[from]);
+                    assertEquals(engine.getRotation(), from);
+                    assertEquals(engine.getX(), X);
+                    assertEquals(engine.getY(), Y);
+                }
+            }
+        }
+    }
+}